@@ -0,0 +1,28 @@
+package benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ *  벤치마크 실행
+ *      - 결과를 JSON(jmh-result.json) 으로 남겨서 이전 결과와 비교한다.
+ *
+ *          java -jar target/benchmarks.jar                        (전체)
+ *          java -jar target/benchmarks.jar FetchBenchmark         (이름이 맞는 것만)
+ *          java -Djmh.result=before.json -jar target/benchmarks.jar
+ */
+public class BenchmarkMain {
+
+    public static void main(String args[]) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : "benchmark\\..*Benchmark")
+                .resultFormat(ResultFormatType.JSON)
+                .result(System.getProperty("jmh.result", "jmh-result.json"))
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,81 @@
+package benchmark;
+
+import jpql.Member;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  벌크 연산 vs 변경 감지
+ *      - Member rows 건의 나이를 모두 1 올리고 롤백한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BulkUpdateBenchmark {
+
+    @Param({"1000", "10000"})
+    private int rows;
+
+    private EntityManagerFactory emf;
+
+    @Setup
+    public void setUp() {
+        emf = Databases.jpql("bulk_" + rows);
+        DataGenerator.teamsAndMembers(emf, rows / 100, 100);
+    }
+
+    @TearDown
+    public void tearDown() {
+        emf.close();
+    }
+
+    @Benchmark
+    public int bulkUpdate() {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            return em.createQuery("update Member m set m.age = m.age + 1").executeUpdate();
+        } finally {
+            tx.rollback();
+            em.close();
+        }
+    }
+
+    @Benchmark
+    public int dirtyChecking() {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            List<Member> members = em.createQuery("select m from Member m", Member.class).getResultList();
+            for (Member member : members) {
+                member.setAge(member.getAge() + 1);
+            }
+            em.flush();
+            return members.size();
+        } finally {
+            tx.rollback();
+            em.close();
+        }
+    }
+}
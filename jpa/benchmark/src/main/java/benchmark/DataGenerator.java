@@ -0,0 +1,125 @@
+package benchmark;
+
+import jpabook.jpashop.domain.Book;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.Item;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
+import jpql.Member;
+import jpql.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ *  벤치마크 데이터
+ *      - 매번 같은 데이터가 만들어지도록 난수를 쓰지 않는다.
+ *      - FLUSH_SIZE 건마다 flush, clear 해서 영속성 컨텍스트가 커지지 않게 한다.
+ */
+public class DataGenerator {
+
+    private static final int FLUSH_SIZE = 1000;
+
+    /**
+     *  jpql : Team teams 건, 팀마다 Member membersPerTeam 건
+     */
+    public static void teamsAndMembers(EntityManagerFactory emf, int teams, int membersPerTeam) {
+        inTransaction(emf, em -> {
+            int count = 0;
+            for (int i = 0; i < teams; i++) {
+                Team team = new Team();
+                team.setName("team" + i);
+                em.persist(team);
+
+                for (int j = 0; j < membersPerTeam; j++) {
+                    Member member = new Member();
+                    member.setUsername("member" + i + "_" + j);
+                    member.setAge(j % 100);
+                    member.setTeam(team);
+                    em.persist(member);
+
+                    if (++count % FLUSH_SIZE == 0) {
+                        em.flush();
+                        em.clear();
+                        team = em.getReference(Team.class, team.getId());
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     *  jpashop : Member members 건, Book items 건, 주문 orders 건 (주문마다 OrderItem itemsPerOrder 건, Delivery 1건)
+     */
+    public static void orders(EntityManagerFactory emf, int members, int items, int orders, int itemsPerOrder) {
+        List<Long> memberIds = new ArrayList<>();
+        List<Long> itemIds = new ArrayList<>();
+
+        inTransaction(emf, em -> {
+            for (int i = 0; i < members; i++) {
+                jpabook.jpashop.domain.Member member = new jpabook.jpashop.domain.Member();
+                member.setName("member" + i);
+                em.persist(member);
+                memberIds.add(member.getId());
+            }
+            for (int i = 0; i < items; i++) {
+                Book book = new Book();
+                book.setName("book" + i);
+                book.setPrice(10000 + i);
+                book.setStockQuantity(1_000_000);
+                em.persist(book);
+                itemIds.add(book.getId());
+            }
+        });
+
+        inTransaction(emf, em -> {
+            for (int i = 0; i < orders; i++) {
+                Delivery delivery = new Delivery();
+                delivery.setStatus(DeliveryStatus.READY);
+
+                jpabook.jpashop.domain.Order order = new jpabook.jpashop.domain.Order();
+                order.setMember(em.getReference(jpabook.jpashop.domain.Member.class, memberIds.get(i % members)));
+                order.setDelivery(delivery);
+                order.setOrderDate(LocalDateTime.now());
+                order.setStatus(OrderStatus.ORDER);
+
+                for (int j = 0; j < itemsPerOrder; j++) {
+                    OrderItem orderItem = new OrderItem();
+                    orderItem.setItem(em.getReference(Item.class, itemIds.get((i + j) % items)));
+                    orderItem.setOrderPrice(10000);
+                    orderItem.setCount(1);
+                    order.addOrderItem(orderItem);
+                }
+                em.persist(order);
+
+                if ((i + 1) % FLUSH_SIZE == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+        });
+    }
+
+    static void inTransaction(EntityManagerFactory emf, Consumer<EntityManager> work) {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            work.accept(em);
+            tx.commit();
+        } catch (RuntimeException e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package benchmark;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ *  벤치마크용 메모리 H2
+ *      - jpql, jpashop 모듈의 persistence.xml 은 둘 다 이름이 "hello" 이고 TCP 서버를 바라본다.
+ *      - 엔티티 클래스만 가져와서 벤치마크마다 다른 이름의 메모리 DB로 띄운다.
+ *      - 2차 캐시, SQL 로그, N+1 감지 같은 부가 설정은 넣지 않는다.
+ */
+public class Databases {
+
+    public static EntityManagerFactory jpql(String name) {
+        return build(name,
+                jpql.Member.class, jpql.Team.class, jpql.Order.class, jpql.Product.class);
+    }
+
+    public static EntityManagerFactory jpashop(String name) {
+        return build(name,
+                jpabook.jpashop.domain.Member.class, jpabook.jpashop.domain.Order.class,
+                jpabook.jpashop.domain.OrderItem.class, jpabook.jpashop.domain.Delivery.class,
+                jpabook.jpashop.domain.Item.class, jpabook.jpashop.domain.Book.class,
+                jpabook.jpashop.domain.Album.class, jpabook.jpashop.domain.Movie.class,
+                jpabook.jpashop.domain.Category.class, jpabook.jpashop.domain.CategoryItem.class);
+    }
+
+    private static EntityManagerFactory build(String name, Class<?>... entityClasses) {
+        Configuration configuration = new Configuration()
+                .setProperty(AvailableSettings.DRIVER, "org.h2.Driver")
+                .setProperty(AvailableSettings.URL, "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1")
+                .setProperty(AvailableSettings.USER, "sa")
+                .setProperty(AvailableSettings.PASS, "")
+                .setProperty(AvailableSettings.DIALECT, "org.hibernate.dialect.H2Dialect")
+                .setProperty(AvailableSettings.HBM2DDL_AUTO, "create")
+                .setProperty(AvailableSettings.STATEMENT_BATCH_SIZE, "100")
+                .setProperty(AvailableSettings.ORDER_INSERTS, "true")
+                .setProperty(AvailableSettings.ORDER_UPDATES, "true");
+
+        for (Class<?> entityClass : entityClasses) {
+            configuration.addAnnotatedClass(entityClass);
+        }
+        return configuration.buildSessionFactory();
+    }
+}
@@ -0,0 +1,108 @@
+package benchmark;
+
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpql.Member;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  지연 로딩 vs 페치 조인
+ *      - Member -> Team : Team 100건, Member 1000건
+ *      - Order -> OrderItem -> Item : Order 1000건, 주문마다 OrderItem 3건, Item 100건
+ *      - lazy 는 반복문에서 연관관계를 건드려서 N+1 이 그대로 나간다. (배치 페치 설정 없음)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FetchBenchmark {
+
+    private EntityManagerFactory jpql;
+    private EntityManagerFactory jpashop;
+
+    @Setup
+    public void setUp() {
+        jpql = Databases.jpql("fetch_jpql");
+        DataGenerator.teamsAndMembers(jpql, 100, 10);
+
+        jpashop = Databases.jpashop("fetch_jpashop");
+        DataGenerator.orders(jpashop, 100, 100, 1000, 3);
+    }
+
+    @TearDown
+    public void tearDown() {
+        jpql.close();
+        jpashop.close();
+    }
+
+    @Benchmark
+    public void memberTeamLazy(Blackhole blackhole) {
+        EntityManager em = jpql.createEntityManager();
+        try {
+            for (Member member : em.createQuery("select m from Member m", Member.class).getResultList()) {
+                blackhole.consume(member.getTeam().getName());
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    @Benchmark
+    public void memberTeamFetchJoin(Blackhole blackhole) {
+        EntityManager em = jpql.createEntityManager();
+        try {
+            for (Member member : em.createQuery("select m from Member m join fetch m.team", Member.class).getResultList()) {
+                blackhole.consume(member.getTeam().getName());
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    @Benchmark
+    public void orderItemLazy(Blackhole blackhole) {
+        EntityManager em = jpashop.createEntityManager();
+        try {
+            for (Order order : em.createQuery("select o from Order o", Order.class).getResultList()) {
+                for (OrderItem orderItem : order.getOrderItems()) {
+                    blackhole.consume(orderItem.getItem().getName());
+                }
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    @Benchmark
+    public void orderItemFetchJoin(Blackhole blackhole) {
+        EntityManager em = jpashop.createEntityManager();
+        try {
+            for (Order order : em.createQuery("select distinct o from Order o" +
+                    " join fetch o.orderItems oi" +
+                    " join fetch oi.item", Order.class).getResultList()) {
+                for (OrderItem orderItem : order.getOrderItems()) {
+                    blackhole.consume(orderItem.getItem().getName());
+                }
+            }
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package benchmark;
+
+import jpql.Member;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  변경 감지 flush
+ *      - Member dirty 건을 조회해서 나이를 바꾸고 flush 한 뒤 롤백한다.
+ *      - load 는 조회 + flush 만 한다. (변경 없음, 스냅샷 비교 비용만 든다.)
+ *      - 두 값의 차이가 dirty 건 update 비용이다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FlushBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int dirty;
+
+    private EntityManagerFactory emf;
+
+    @Setup
+    public void setUp() {
+        emf = Databases.jpql("flush");
+        DataGenerator.teamsAndMembers(emf, 10, 100);
+    }
+
+    @TearDown
+    public void tearDown() {
+        emf.close();
+    }
+
+    @Benchmark
+    public int load() {
+        return flush(false);
+    }
+
+    @Benchmark
+    public int loadModifyFlush() {
+        return flush(true);
+    }
+
+    private int flush(boolean modify) {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            List<Member> members = em.createQuery("select m from Member m order by m.id", Member.class)
+                    .setMaxResults(dirty)
+                    .getResultList();
+            if (modify) {
+                for (Member member : members) {
+                    member.setAge(member.getAge() + 1);
+                }
+            }
+            em.flush();
+            return members.size();
+        } finally {
+            tx.rollback();
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package benchmark;
+
+import jpql.Member;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  영속성 컨텍스트가 클 때 flush
+ *      - Member managed 건을 한 영속성 컨텍스트에 올려두고, 매번 modified 건만 나이를 바꿔서 flush 한다.
+ *      - 트랜잭션은 끝날 때 롤백한다.
+ *      - 향상(jpql 모듈 enhance 프로파일) 여부에 따라 비교한다.
+ *          : 스냅샷 비교 - flush 마다 managed 건 전부 필드를 하나씩 비교한다.
+ *          : 변경 추적 - 바뀐 필드가 없는 엔티티는 비교 없이 넘어간다.
+ *
+ *          cd ../jpql && mvn install
+ *          cd ../benchmark && mvn package && java -Djmh.result=snapshot.json -jar target/benchmarks.jar ManagedFlushBenchmark
+ *          cd ../jpql && mvn install -Penhance
+ *          cd ../benchmark && mvn package && java -Djmh.result=tracking.json -jar target/benchmarks.jar ManagedFlushBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 3, jvmArgs = "-Xmx2g")
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class ManagedFlushBenchmark {
+
+    @Param({"100000"})
+    private int managed;
+
+    @Param({"0", "10"})
+    private int modified;
+
+    private EntityManagerFactory emf;
+    private EntityManager em;
+    private EntityTransaction tx;
+    private List<Member> members;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        emf = Databases.jpql("managed-flush");
+        DataGenerator.teamsAndMembers(emf, managed / 1000, 1000);
+
+        em = emf.createEntityManager();
+        tx = em.getTransaction();
+        tx.begin();
+        members = em.createQuery("select m from Member m", Member.class).getResultList();
+    }
+
+    @TearDown
+    public void tearDown() {
+        tx.rollback();
+        em.close();
+        emf.close();
+    }
+
+    @Benchmark
+    public int flush() {
+        for (int i = 0; i < modified; i++) {
+            Member member = members.get(next++ % members.size());
+            member.setAge(member.getAge() + 1);
+        }
+        em.flush();
+        return members.size();
+    }
+}
@@ -0,0 +1,73 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  persist 처리량
+ *      - jpql.Member : @GeneratedValue 기본값 (hibernate_sequence, allocationSize 1)
+ *      - jpashop Member : 엔티티별 시퀀스, allocationSize 100 (pooled)
+ *      - 한 번에 entities 건을 persist 하고 커밋한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PersistBenchmark {
+
+    @Param({"100", "1000"})
+    private int entities;
+
+    private EntityManagerFactory jpql;
+    private EntityManagerFactory jpashop;
+
+    @Setup
+    public void setUp() {
+        jpql = Databases.jpql("persist_jpql");
+        jpashop = Databases.jpashop("persist_jpashop");
+    }
+
+    @TearDown
+    public void tearDown() {
+        jpql.close();
+        jpashop.close();
+    }
+
+    @Benchmark
+    public void singleSequence() {
+        DataGenerator.inTransaction(jpql, em -> {
+            for (int i = 0; i < entities; i++) {
+                jpql.Member member = new jpql.Member();
+                member.setUsername("member" + i);
+                member.setAge(i % 100);
+                em.persist(member);
+            }
+        });
+    }
+
+    @Benchmark
+    public void pooledSequence() {
+        DataGenerator.inTransaction(jpashop, em -> {
+            for (int i = 0; i < entities; i++) {
+                jpabook.jpashop.domain.Member member = new jpabook.jpashop.domain.Member();
+                member.setName("member" + i);
+                em.persist(member);
+            }
+        });
+    }
+}
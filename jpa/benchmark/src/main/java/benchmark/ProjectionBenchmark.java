@@ -0,0 +1,82 @@
+package benchmark;
+
+import jpql.DtoProjection;
+import jpql.Member;
+import jpql.UserDTO;
+import jpql.UserView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Tuple;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ *  엔티티 조회 vs select new vs DtoProjection
+ *      - Member 100000건에서 username, age 만 읽는다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ProjectionBenchmark {
+
+    private EntityManagerFactory emf;
+
+    @Setup
+    public void setUp() {
+        emf = Databases.jpql("projection");
+        DataGenerator.teamsAndMembers(emf, 100, 1000);
+    }
+
+    @TearDown
+    public void tearDown() {
+        emf.close();
+    }
+
+    @Benchmark
+    public List<Member> entity() {
+        return read(em -> em.createQuery("select m from Member m", Member.class).getResultList());
+    }
+
+    @Benchmark
+    public List<UserDTO> selectNew() {
+        return read(em -> em.createQuery("select new jpql.UserDTO(m.username, m.age) from Member m", UserDTO.class)
+                .getResultList());
+    }
+
+    @Benchmark
+    public List<UserDTO> dtoProjection() {
+        return read(em -> DtoProjection.list(em.createQuery("select m.username, m.age from Member m"), UserDTO.class));
+    }
+
+    @Benchmark
+    public List<UserView> interfaceProjection() {
+        return read(em -> DtoProjection.listTuples(
+                em.createQuery("select m.username as username, m.age as age from Member m", Tuple.class).getResultList(),
+                UserView.class));
+    }
+
+    private <T> List<T> read(Function<EntityManager, List<T>> query) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return query.apply(em);
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package common;
+
+import org.hibernate.EntityMode;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.ComponentType;
+import org.hibernate.type.Type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  임베디드 값 타입 인터닝 (flyweight)
+ *      - 엔티티를 읽으면 row 마다 새 임베디드 값(Address 는 문자열 3개 포함)이 만들어진다.
+ *        값 종류는 몇 천 개뿐인데 같은 값이 row 수만큼 메모리에 올라간다.
+ *      - @Interned 임베디드 타입은 로딩 직후(post-load) 같은 값의 인스턴스 하나로 바꿔 끼운다.
+ *          : 엔티티 필드와 변경 감지용 스냅샷(loadedState)을 둘 다 바꾼다.
+ *      - 캐시는 개수 제한이 있는 LRU 이다. (기본 10000, -Dintern.max_entries)
+ *          : 키는 속성 값 배열과 미리 계산해 둔 해시 코드로 만든다.
+ *
+ *  설정 (persistence.xml, 기본은 꺼져 있다.)
+ *      - hibernate.ejb.event.post-load = common.EmbeddableInterner
+ *
+ *  주의점
+ *      - 여러 엔티티가 같은 인스턴스를 공유하므로 @Interned 타입은 불변이어야 한다. (setter 금지)
+ *        값을 바꿀 때는 new Address(...) 로 통째로 교체한다.
+ *      - 조회에만 적용된다. 애플리케이션에서 만든 인스턴스는 그대로 저장된다.
+ */
+public class EmbeddableInterner implements PostLoadEventListener {
+
+    private static final int MAX_ENTRIES = Integer.getInteger("intern.max_entries", 10_000);
+    private static final int SEGMENTS = 16;
+
+    // 엔티티 이름 -> @Interned 임베디드 속성 위치
+    private static final Map<String, int[]> INTERNED = new ConcurrentHashMap<>();
+
+    private static final Segment[] CACHE = new Segment[SEGMENTS];
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+
+    static {
+        for (int i = 0; i < SEGMENTS; i++) {
+            CACHE[i] = new Segment(Math.max(1, MAX_ENTRIES / SEGMENTS));
+        }
+    }
+
+    @Override
+    public void onPostLoad(PostLoadEvent event) {
+        EntityPersister persister = event.getPersister();
+        int[] properties = internedProperties(persister);
+        if (properties.length == 0) {
+            return;
+        }
+
+        Object entity = event.getEntity();
+        EntityEntry entry = event.getSession().getPersistenceContext().getEntry(entity);
+        Object[] loadedState = entry == null ? null : entry.getLoadedState();
+        Type[] types = persister.getPropertyTypes();
+
+        for (int index : properties) {
+            Object value = persister.getPropertyValue(entity, index);
+            if (value == null) {
+                continue;
+            }
+
+            ComponentType type = (ComponentType) types[index];
+            Object canonical = intern(type, value);
+            if (canonical != value) {
+                persister.setPropertyValue(entity, index, canonical);
+            }
+            // 스냅샷은 deepCopy 된 별도 인스턴스다. 값이 같을 때만 바꾼다. (@PostLoad 에서 값을 바꿨을 수 있다.)
+            if (loadedState != null && type.isEqual(loadedState[index], canonical)) {
+                loadedState[index] = canonical;
+            }
+        }
+    }
+
+    public static Object intern(ComponentType type, Object value) {
+        Key key = new Key(type.getReturnedClass(), type.getPropertyValues(value, EntityMode.POJO));
+        Segment segment = CACHE[(key.hash ^ (key.hash >>> 16)) & (SEGMENTS - 1)];
+
+        synchronized (segment) {
+            Object canonical = segment.get(key);
+            if (canonical != null) {
+                HITS.increment();
+                return canonical;
+            }
+            segment.put(key, value);
+        }
+        MISSES.increment();
+        return value;
+    }
+
+    public static long hits() {
+        return HITS.sum();
+    }
+
+    public static long misses() {
+        return MISSES.sum();
+    }
+
+    public static int size() {
+        int size = 0;
+        for (Segment segment : CACHE) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public static void clear() {
+        for (Segment segment : CACHE) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        HITS.reset();
+        MISSES.reset();
+    }
+
+    private static int[] internedProperties(EntityPersister persister) {
+        return INTERNED.computeIfAbsent(persister.getEntityName(), entityName -> {
+            List<Integer> properties = new ArrayList<>();
+            Type[] types = persister.getPropertyTypes();
+            for (int i = 0; i < types.length; i++) {
+                if (types[i].isComponentType() && types[i].getReturnedClass().isAnnotationPresent(Interned.class)) {
+                    properties.add(i);
+                }
+            }
+            return properties.stream().mapToInt(Integer::intValue).toArray();
+        });
+    }
+
+    private static final class Key {
+
+        private final Class<?> type;
+        private final Object[] values;
+        private final int hash;
+
+        Key(Class<?> type, Object[] values) {
+            this.type = type;
+            this.values = values;
+            this.hash = 31 * type.hashCode() + Arrays.deepHashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return hash == key.hash && type == key.type && Arrays.deepEquals(values, key.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     *  접근 순서 LinkedHashMap (가장 오래 안 쓴 값부터 밀려난다.)
+     */
+    private static final class Segment extends LinkedHashMap<Key, Object> {
+
+        private final int maxEntries;
+
+        Segment(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+            return size() > maxEntries;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package common;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ *  조회할 때 같은 값의 인스턴스 하나를 공유해도 되는 불변 임베디드 타입 (EmbeddableInterner)
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Interned {
+}
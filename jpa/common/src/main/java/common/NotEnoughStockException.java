@@ -0,0 +1,8 @@
+package common;
+
+public class NotEnoughStockException extends RuntimeException {
+
+    public NotEnoughStockException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,230 @@
+package common;
+
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.FlushMode;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.engine.spi.CollectionEntry;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.jpa.QueryHints;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.type.Type;
+import org.jboss.logging.Logger;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ *  읽기 전용 영속성 컨텍스트
+ *      - 조회만 하는 화면에서도 EntityManager 는 엔티티마다 스냅샷(loadedState)을 들고 있고,
+ *        JPQL 실행 전마다 자동 flush 로 영속 엔티티 전체를 확인한다.
+ *      - open() 으로 연 EntityManager 는
+ *          : flush 하지 않는다. (FlushMode.MANUAL, 커밋 때도 X)
+ *          : 트랜잭션마다 JDBC 커넥션을 읽기 전용으로 표시한다. (커넥션을 반납하기 전에 되돌린다.)
+ *          : persist, remove, 엔티티 / 컬렉션 값 변경, insert / update / delete SQL 은 예외
+ *          : 엔티티가 모두 바이트코드 향상(mvn -Penhance)되어 있으면 읽기 전용으로 올린다.
+ *            (스냅샷을 버린다. session.setDefaultReadOnly, 값 변경은 향상된 변경 추적으로 확인한다.)
+ *          : 향상되지 않은 엔티티가 있으면(기본 빌드) 스냅샷을 남겨두고 스냅샷과 비교해서 값 변경을 확인한다.
+ *            (flush 는 생략하지만 힙은 일반 EntityManager 와 같다.)
+ *      - 일반 EntityManager 에서 쿼리 하나만 읽기 전용으로 할 때는 query() (스냅샷 X, 자동 flush X)
+ *          : 이렇게 읽은 엔티티의 값 변경은 예외 없이 무시된다. (하이버네이트 읽기 전용 엔티티)
+ *
+ *          EntityManager em = ReadOnlyMode.open(emf);
+ *          List<Member> members = em.createQuery("select m from Member m", Member.class).getResultList();
+ *          em.close();
+ *
+ *          List<Team> teams = ReadOnlyMode.query(em.createQuery("select t from Team t", Team.class)).getResultList();
+ *
+ *  주의점
+ *      - 값 변경은 flush() 나 커밋할 때 확인한다. 트랜잭션 없이 바꾸고 닫으면 예외가 나지 않는다.
+ *      - 향상된 빌드에서는 스냅샷이 없어서 값을 바꿨다가 원래 값으로 되돌려도 변경으로 본다.
+ *      - 읽기 전용 엔티티에서 지연 로딩한 연관 엔티티, 컬렉션도 읽기 전용이다.
+ *      - H2는 커넥션의 읽기 전용 표시를 무시한다. (SQL 검사로 막는다.)
+ *      - 커넥션을 붙잡아 두지 않는다. 트랜잭션 없이 조회하면 읽기 전용 표시 없이 실행된다. (SQL 검사는 같다.)
+ */
+public class ReadOnlyMode {
+
+    private static final Logger log = Logger.getLogger(ReadOnlyMode.class);
+
+    public static EntityManager open(EntityManagerFactory emf) {
+        SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+
+        ReadOnlyConnection readOnlyConnection = new ReadOnlyConnection();
+        Guard guard = new Guard(sessionFactory.getSessionFactoryOptions().getStatementInspector(), readOnlyConnection);
+        Session session = sessionFactory.withOptions()
+                .interceptor(guard)
+                .statementInspector(guard)
+                .eventListeners(readOnlyConnection)
+                .flushMode(FlushMode.MANUAL)
+                .openSession();
+        session.setDefaultReadOnly(enhanced(sessionFactory));
+        guard.session = (SessionImplementor) session;
+        return session;
+    }
+
+    // 모든 엔티티가 변경 추적 코드로 향상되었는지 (스냅샷 없이 값 변경을 알 수 있는지)
+    private static boolean enhanced(SessionFactoryImplementor sessionFactory) {
+        for (EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values()) {
+            if (!SelfDirtinessTracker.class.isAssignableFrom(persister.getMappedClass())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static <T> TypedQuery<T> query(TypedQuery<T> query) {
+        return query.setHint(QueryHints.HINT_READONLY, true)
+                .setHint(QueryHints.HINT_FLUSH_MODE, FlushMode.MANUAL);
+    }
+
+    /**
+     *  읽기 전용 세션에서 변경을 막는다.
+     *      - persist, remove : 즉시 예외
+     *      - 값 변경 : flush(), 커밋 직전에 향상된 엔티티는 변경 필드를, 아니면 스냅샷과 현재 값을 비교한다.
+     *        컬렉션은 추가 / 삭제를 확인한다.
+     *      - SQL : insert, update, delete, merge 로 시작하면 예외 (벌크 연산, 네이티브 쿼리)
+     *      - 트랜잭션을 시작하면 커넥션을 읽기 전용으로 표시한다.
+     */
+    private static class Guard extends EmptyInterceptor implements StatementInspector {
+
+        private final StatementInspector delegate;
+        private final ReadOnlyConnection readOnlyConnection;
+        private SessionImplementor session;
+
+        Guard(StatementInspector delegate, ReadOnlyConnection readOnlyConnection) {
+            this.delegate = delegate;
+            this.readOnlyConnection = readOnlyConnection;
+        }
+
+        @Override
+        public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+            throw new HibernateException("읽기 전용 EntityManager 에서는 저장할 수 없습니다. " + entity.getClass().getSimpleName());
+        }
+
+        @Override
+        public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+            throw new HibernateException("읽기 전용 EntityManager 에서는 삭제할 수 없습니다. " + entity.getClass().getSimpleName() + "#" + id);
+        }
+
+        @Override
+        public void preFlush(Iterator entities) {
+            checkUnchanged();
+        }
+
+        @Override
+        public void afterTransactionBegin(Transaction tx) {
+            // 첫 SQL 전이므로 이번 트랜잭션부터 읽기 전용이 된다.
+            session.doWork(readOnlyConnection::markReadOnly);
+            // 커밋 때 flush 하지 않으므로 커밋 직전에 따로 확인한다.
+            session.getActionQueue().registerProcess(completing -> checkUnchanged());
+        }
+
+        private void checkUnchanged() {
+            for (Map.Entry<Object, EntityEntry> entry : session.getPersistenceContext().reentrantSafeEntityEntries()) {
+                Object entity = entry.getKey();
+                String[] dirty = dirtyAttributes(entity, entry.getValue());
+                if (dirty.length > 0) {
+                    throw new HibernateException("읽기 전용 EntityManager 에서 엔티티 값을 바꿨습니다. "
+                            + entity.getClass().getSimpleName() + "#" + entry.getValue().getId()
+                            + " " + Arrays.toString(dirty));
+                }
+            }
+            @SuppressWarnings("unchecked")
+            Map<PersistentCollection, CollectionEntry> collections = session.getPersistenceContext().getCollectionEntries();
+            for (Map.Entry<PersistentCollection, CollectionEntry> entry : collections.entrySet()) {
+                if (entry.getKey().isDirty()) {
+                    throw new HibernateException("읽기 전용 EntityManager 에서 컬렉션을 바꿨습니다. " + entry.getValue().getRole()
+                            + "#" + entry.getValue().getKey());
+                }
+            }
+        }
+
+        private String[] dirtyAttributes(Object entity, EntityEntry entry) {
+            if (entity instanceof SelfDirtinessTracker) {
+                return ((SelfDirtinessTracker) entity).$$_hibernate_getDirtyAttributes();
+            }
+            // 읽기 전용으로 올린 엔티티는 스냅샷이 없다. (모든 엔티티가 향상되었을 때만 그렇게 올린다.)
+            Object[] loadedState = entry.getLoadedState();
+            if (loadedState == null) {
+                return new String[0];
+            }
+
+            EntityPersister persister = entry.getPersister();
+            int[] dirty = persister.findDirty(persister.getPropertyValues(entity), loadedState, entity, session);
+            if (dirty == null) {
+                return new String[0];
+            }
+            String[] names = persister.getPropertyNames();
+            return IntStream.of(dirty).mapToObj(i -> names[i]).toArray(String[]::new);
+        }
+
+        @Override
+        public String inspect(String sql) {
+            String statement = stripComment(sql).toLowerCase();
+            if (statement.startsWith("insert") || statement.startsWith("update")
+                    || statement.startsWith("delete") || statement.startsWith("merge")) {
+                throw new HibernateException("읽기 전용 EntityManager 에서는 실행할 수 없습니다. " + sql);
+            }
+            return delegate == null ? sql : delegate.inspect(sql);
+        }
+
+        // hibernate.use_sql_comments 주석 (/* ... */)
+        private static String stripComment(String sql) {
+            String statement = sql.trim();
+            while (statement.startsWith("/*")) {
+                int end = statement.indexOf("*/");
+                if (end < 0) {
+                    break;
+                }
+                statement = statement.substring(end + 2).trim();
+            }
+            return statement;
+        }
+    }
+
+    /**
+     *  트랜잭션에서 읽기 전용으로 표시한 커넥션을 풀에 반납하기 전에 되돌린다.
+     *      - 커넥션은 트랜잭션이 끝나면(커밋, 롤백 후) 반납된다. 세션이 닫힐 때도 같다.
+     */
+    private static class ReadOnlyConnection extends BaseSessionEventListener {
+
+        private Connection connection;
+
+        void markReadOnly(Connection connection) throws SQLException {
+            if (!connection.isReadOnly()) {
+                connection.setReadOnly(true);
+                this.connection = connection;
+            }
+        }
+
+        @Override
+        public void jdbcConnectionReleaseStart() {
+            if (connection == null) {
+                return;
+            }
+            try {
+                connection.setReadOnly(false);
+            } catch (SQLException e) {
+                // 여기서 예외를 던지면 커넥션이 반납되지 않는다.
+                log.warn("읽기 전용 표시를 되돌리지 못했습니다.", e);
+            } finally {
+                connection = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,479 @@
+package common;
+
+import org.jboss.logging.Logger;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.metamodel.EntityType;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ *  재고 예약
+ *      - product.setStockAmount(product.getStockAmount() - n) 처럼 변경 감지로 재고를 빼면
+ *        동시에 주문이 들어왔을 때 나중에 커밋한 값이 앞의 값을 덮어쓴다. (갱신 손실)
+ *      - 조건부 update 한 번으로 DB에서 원자적으로 뺀다.
+ *          : update Product e set e.stockAmount = e.stockAmount - :quantity
+ *            where e.id = :id and e.stockAmount >= :quantity
+ *      - reserve -> confirm (주문 완료) / release (주문 취소, 재고 복구)
+ *      - 재고 속성(int, long)을 가진 엔티티면 된다.
+ *
+ *          new StockReservation(emf, Product.class, "stockAmount")       (jpql)
+ *          new StockReservation(emf, Item.class, "stockQuantity")        (jpashop)
+ *
+ *  버퍼 모드 (stripes > 0)
+ *      - 같은 상품에 주문이 몰리면 한 row에 락이 몰린다.
+ *      - 재고를 메모리에 stripes 개로 나눠 두고 CAS로 뺀다.
+ *      - 뺀 예약을 모아두었다가 flushIntervalMillis 마다 한 번에 DB에 반영한다.
+ *          : 주기 flush 가 실패하면 로그를 남기고 다음 주기에 다시 반영한다. (스케줄이 멈추지 않는다.)
+ *      - DB 재고가 메모리 재고보다 적으면 (다른 곳에서 재고를 바꿈) 먼저 들어온 예약부터 DB 재고만큼만 반영하고,
+ *        나머지 예약은 REJECTED 가 된다. (confirm / release 하면 NotEnoughStockException)
+ *        메모리 재고도 DB 재고에 맞춘다.
+ *      - close() 는 주기 flush 가 끝나기를 기다린 뒤 남은 예약을 반영한다.
+ *
+ *  주의점
+ *      - 버퍼 모드의 예약은 flush 전까지 DB에 없다. 서버가 죽으면 아직 flush 하지 않은 예약은 사라진다.
+ *      - 버퍼 모드에서는 이 객체만 재고를 바꾸는 것이 좋다. (다른 곳에서 줄이면 flush 때 예약이 취소된다.)
+ */
+public class StockReservation implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(StockReservation.class);
+
+    public enum Status {
+        RESERVED, CONFIRMED, RELEASED, REJECTED
+    }
+
+    private final EntityManagerFactory emf;
+    private final boolean longStock;
+    private final String take;
+    private final String giveBack;
+    private final String select;
+    private final int stripes;
+    private final Map<Object, StripedStock> stocks = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private volatile boolean closed;
+
+    public StockReservation(EntityManagerFactory emf, Class<?> entityClass, String stockAttribute) {
+        this(emf, entityClass, stockAttribute, 0, null);
+    }
+
+    public StockReservation(EntityManagerFactory emf, Class<?> entityClass, String stockAttribute,
+                            int stripes, long flushIntervalMillis) {
+        this(emf, entityClass, stockAttribute, checkStripes(stripes), Executors.newSingleThreadScheduledExecutor());
+        // 예외가 스케줄러까지 올라가면 다음 실행이 모두 취소된다.
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (NotEnoughStockException e) {
+                log.warn(e.getMessage());
+            } catch (RuntimeException e) {
+                log.error("재고 flush 실패 (다음 주기에 다시 반영)", e);
+            }
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private StockReservation(EntityManagerFactory emf, Class<?> entityClass, String stockAttribute,
+                             int stripes, ScheduledExecutorService flusher) {
+        EntityType<?> entityType = emf.getMetamodel().entity(entityClass);
+        Class<?> stockType = entityType.getAttribute(stockAttribute).getJavaType();
+        String entity = entityType.getName();
+        String id = entityType.getId(entityType.getIdType().getJavaType()).getName();
+
+        this.emf = emf;
+        this.longStock = stockType == long.class || stockType == Long.class;
+        this.take = "update " + entity + " e set e." + stockAttribute + " = e." + stockAttribute + " - :quantity" +
+                " where e." + id + " = :id and e." + stockAttribute + " >= :quantity";
+        this.giveBack = "update " + entity + " e set e." + stockAttribute + " = e." + stockAttribute + " + :quantity" +
+                " where e." + id + " = :id";
+        this.select = "select e." + stockAttribute + " from " + entity + " e where e." + id + " = :id";
+        this.stripes = stripes;
+        this.flusher = flusher;
+    }
+
+    private static int checkStripes(int stripes) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("stripes는 1 이상이어야 합니다.");
+        }
+        return stripes;
+    }
+
+    public Reservation reserve(Object id, int quantity) {
+        if (quantity < 1) {
+            throw new IllegalArgumentException("수량은 1 이상이어야 합니다.");
+        }
+
+        if (stripes == 0) {
+            if (executeUpdate(take, id, quantity) != 1) {
+                throw new NotEnoughStockException("재고가 부족합니다. id : " + id + ", quantity : " + quantity);
+            }
+            return new Reservation(id, quantity, null);
+        }
+
+        if (closed) {
+            throw new IllegalStateException("닫힌 StockReservation 입니다.");
+        }
+        StripedStock stock = stock(id);
+        if (!stock.take(quantity)) {
+            throw new NotEnoughStockException("재고가 부족합니다. id : " + id + ", quantity : " + quantity);
+        }
+        Reservation reservation = new Reservation(id, quantity, stock);
+        stock.unflushed.add(reservation);
+        return reservation;
+    }
+
+    public void confirm(Reservation reservation) {
+        reservation.change(Status.CONFIRMED);
+    }
+
+    /**
+     *  재고를 되돌린 뒤에 RELEASED 로 확정한다.
+     *      - 되돌리지 못하면 RESERVED 로 돌려놓는다. (다시 release 할 수 있다.)
+     *      - 버퍼 모드에서는 flush 와 겹치지 않게 한다. (반영 중인 예약이 취소될 수 있다.)
+     */
+    public void release(Reservation reservation) {
+        if (stripes > 0) {
+            synchronized (this) {
+                reservation.change(Status.RELEASED);
+                reservation.stock.giveBack(reservation);
+            }
+            return;
+        }
+
+        reservation.change(Status.RELEASED);
+        try {
+            executeUpdate(giveBack, reservation.id, reservation.quantity);
+        } catch (RuntimeException e) {
+            reservation.restore(Status.RELEASED);
+            throw e;
+        }
+    }
+
+    /**
+     *  메모리에서 뺀 예약을 상품별로 한 트랜잭션에 DB에 반영한다.
+     *      - 반영할 예약을 먼저 모두 꺼내 두고(taken), 롤백되면 모두 되돌려 둔다. (다음 flush 때 다시 반영)
+     *      - DB 재고가 부족한 상품은 먼저 들어온 예약부터 DB 재고만큼 반영하고, 커밋 후에 나머지 예약을 취소한다.
+     *        취소한 예약으로 NotEnoughStockException 을 던진다. (다른 상품은 반영된다.)
+     */
+    public synchronized void flush() {
+        Map<Object, Batch> taken = new LinkedHashMap<>();
+        stocks.forEach((id, stock) -> {
+            Batch batch = stock.drain();
+            if (!batch.isEmpty()) {
+                taken.put(id, batch);
+            }
+        });
+        if (taken.isEmpty()) {
+            return;
+        }
+
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            for (Map.Entry<Object, Batch> entry : taken.entrySet()) {
+                apply(em, entry.getKey(), entry.getValue());
+            }
+            tx.commit();
+        } catch (RuntimeException e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            taken.forEach((id, batch) -> stocks.get(id).restore(batch));
+            throw e;
+        } finally {
+            em.close();
+        }
+
+        List<Reservation> rejected = new ArrayList<>();
+        taken.forEach((id, batch) -> rejected.addAll(stocks.get(id).applied(batch)));
+        if (!rejected.isEmpty()) {
+            throw new NotEnoughStockException("DB 재고가 부족해서 예약을 취소했습니다. " + rejected);
+        }
+    }
+
+    /**
+     *  주기 flush 를 멈추고(실행 중이면 끝날 때까지 기다린다) 남은 예약을 반영한다.
+     */
+    @Override
+    public void close() {
+        if (flusher == null) {
+            return;
+        }
+
+        closed = true;
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("주기 flush 가 끝나지 않았습니다. 남은 예약을 반영합니다.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    // 상품 하나의 예약을 반영한다. (트랜잭션 안)
+    private void apply(EntityManager em, Object id, Batch batch) {
+        long delta = batch.units(batch.reservations.size()) - batch.returned;
+        if (delta < 0) {
+            executeUpdate(em, giveBack, id, -delta);
+            return;
+        }
+        if (delta == 0 || executeUpdate(em, take, id, delta) == 1) {
+            return;
+        }
+
+        // DB 재고가 부족하다. 먼저 들어온 예약부터 담는다.
+        Number stock = em.createQuery(select, Number.class)
+                .setParameter("id", id)
+                .getSingleResult();
+        batch.stock = stock.longValue();
+
+        int accepted = 0;
+        long units = 0;
+        for (Reservation reservation : batch.reservations) {
+            if (units + reservation.quantity > batch.stock + batch.returned) {
+                break;
+            }
+            units += reservation.quantity;
+            accepted++;
+        }
+        batch.accepted = accepted;
+
+        delta = units - batch.returned;
+        int count = delta < 0 ? executeUpdate(em, giveBack, id, -delta)
+                : delta == 0 ? 1
+                : executeUpdate(em, take, id, delta);
+        if (count != 1) {
+            throw new IllegalStateException("재고를 반영하지 못했습니다. id : " + id);
+        }
+    }
+
+    private StripedStock stock(Object id) {
+        return stocks.computeIfAbsent(id, key -> {
+            EntityManager em = emf.createEntityManager();
+            try {
+                Number stock = em.createQuery(select, Number.class)
+                        .setParameter("id", key)
+                        .getSingleResult();
+                return new StripedStock(stock.longValue(), stripes);
+            } finally {
+                em.close();
+            }
+        });
+    }
+
+    private int executeUpdate(String jpql, Object id, long quantity) {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            int count = executeUpdate(em, jpql, id, quantity);
+            tx.commit();
+            return count;
+        } catch (RuntimeException e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
+    private int executeUpdate(EntityManager em, String jpql, Object id, long quantity) {
+        return em.createQuery(jpql)
+                .setParameter("id", id)
+                .setParameter("quantity", longStock ? (Object) quantity : (Object) Math.toIntExact(quantity))
+                .executeUpdate();
+    }
+
+    public static class Reservation {
+
+        private final Object id;
+        private final int quantity;
+        private final StripedStock stock;
+        private final AtomicReference<Status> status = new AtomicReference<>(Status.RESERVED);
+
+        private Reservation(Object id, int quantity, StripedStock stock) {
+            this.id = id;
+            this.quantity = quantity;
+            this.stock = stock;
+        }
+
+        private void change(Status next) {
+            if (!status.compareAndSet(Status.RESERVED, next)) {
+                if (status.get() == Status.REJECTED) {
+                    throw new NotEnoughStockException("재고가 부족해서 취소된 예약입니다. " + this);
+                }
+                throw new IllegalStateException("이미 처리된 예약입니다. status : " + status.get());
+            }
+        }
+
+        private void restore(Status changed) {
+            status.compareAndSet(changed, Status.RESERVED);
+        }
+
+        private void reject() {
+            Status current;
+            while ((current = status.get()) == Status.RESERVED || current == Status.CONFIRMED) {
+                if (status.compareAndSet(current, Status.REJECTED)) {
+                    return;
+                }
+            }
+        }
+
+        public Object getId() {
+            return id;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public Status getStatus() {
+            return status.get();
+        }
+
+        @Override
+        public String toString() {
+            return "id=" + id + ", quantity=" + quantity;
+        }
+    }
+
+    // flush 한 번에 반영할 상품 하나의 예약
+    private static class Batch {
+
+        private final List<Reservation> reservations;
+        private final long returned;
+        private int accepted;
+        private Long stock;
+
+        Batch(List<Reservation> reservations, long returned) {
+            this.reservations = reservations;
+            this.returned = returned;
+            this.accepted = reservations.size();
+        }
+
+        boolean isEmpty() {
+            return reservations.isEmpty() && returned == 0;
+        }
+
+        long units(int count) {
+            long units = 0;
+            for (int i = 0; i < count; i++) {
+                units += reservations.get(i).quantity;
+            }
+            return units;
+        }
+    }
+
+    /**
+     *  상품 하나의 메모리 재고
+     *      - 스레드마다 다른 stripe에서 CAS로 빼서 경합을 줄인다.
+     *      - 내 stripe가 부족하면 다른 stripe를 보고, 그래도 없으면 전체를 모아서 다시 나눈다.
+     *      - 메모리 재고 + 아직 반영하지 않은 예약 - 반영 후 되돌린 양 = 마지막으로 맞춘 DB 재고 (synced)
+     */
+    private static class StripedStock {
+
+        private final AtomicLong[] stripes;
+        private final ConcurrentLinkedDeque<Reservation> unflushed = new ConcurrentLinkedDeque<>();
+        // DB에 반영한 뒤에 release 한 양 (다음 flush 에 더한다.)
+        private final AtomicLong returned = new AtomicLong();
+        private long synced;
+
+        StripedStock(long available, int count) {
+            this.stripes = new AtomicLong[count];
+            for (int i = 0; i < count; i++) {
+                stripes[i] = new AtomicLong();
+            }
+            this.synced = available;
+            distribute(available);
+        }
+
+        boolean take(int quantity) {
+            int start = (int) (Thread.currentThread().getId() % stripes.length);
+            for (int i = 0; i < stripes.length; i++) {
+                AtomicLong stripe = stripes[(start + i) % stripes.length];
+                long current;
+                while ((current = stripe.get()) >= quantity) {
+                    if (stripe.compareAndSet(current, current - quantity)) {
+                        return true;
+                    }
+                }
+            }
+            return rebalanceAndTake(quantity);
+        }
+
+        void giveBack(Reservation reservation) {
+            if (!unflushed.remove(reservation)) {
+                returned.addAndGet(reservation.quantity);
+            }
+            stripes[(int) (Thread.currentThread().getId() % stripes.length)].addAndGet(reservation.quantity);
+        }
+
+        Batch drain() {
+            List<Reservation> reservations = new ArrayList<>();
+            Reservation reservation;
+            while ((reservation = unflushed.pollFirst()) != null) {
+                reservations.add(reservation);
+            }
+            return new Batch(reservations, returned.getAndSet(0));
+        }
+
+        // 롤백 : 꺼낸 순서대로 앞에 되돌린다.
+        void restore(Batch batch) {
+            for (int i = batch.reservations.size() - 1; i >= 0; i--) {
+                unflushed.addFirst(batch.reservations.get(i));
+            }
+            returned.addAndGet(batch.returned);
+        }
+
+        // 커밋 후 : 담지 못한 예약을 취소하고 메모리 재고를 DB 재고에 맞춘다.
+        List<Reservation> applied(Batch batch) {
+            long applied = batch.units(batch.accepted) - batch.returned;
+            if (batch.stock == null) {
+                synced -= applied;
+                return new ArrayList<>();
+            }
+
+            List<Reservation> rejected = batch.reservations.subList(batch.accepted, batch.reservations.size());
+            rejected.forEach(Reservation::reject);
+            // 메모리가 믿던 DB 재고(synced)와 실제 DB 재고의 차이, 취소한 예약은 메모리에 돌려준다.
+            stripes[0].addAndGet(batch.stock - synced + batch.units(batch.reservations.size()) - batch.units(batch.accepted));
+            synced = batch.stock - applied;
+            return rejected;
+        }
+
+        private synchronized boolean rebalanceAndTake(int quantity) {
+            long total = 0;
+            for (AtomicLong stripe : stripes) {
+                total += stripe.getAndSet(0);
+            }
+
+            boolean taken = total >= quantity;
+            if (taken) {
+                total -= quantity;
+            }
+            distribute(total);
+            return taken;
+        }
+
+        private void distribute(long available) {
+            long share = available / stripes.length;
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i].addAndGet(i == 0 ? share + available % stripes.length : share);
+            }
+        }
+    }
+}
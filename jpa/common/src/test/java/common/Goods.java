@@ -0,0 +1,51 @@
+package common;
+
+import javax.persistence.ElementCollection;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import java.util.HashSet;
+import java.util.Set;
+
+@Entity
+public class Goods {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+
+    private String name;
+
+    private long stockAmount;
+
+    @ElementCollection
+    private Set<String> tags = new HashSet<>();
+
+    protected Goods() {
+    }
+
+    public Goods(String name, long stockAmount) {
+        this.name = name;
+        this.stockAmount = stockAmount;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getStockAmount() {
+        return stockAmount;
+    }
+
+    public Set<String> getTags() {
+        return tags;
+    }
+}
@@ -0,0 +1,161 @@
+package common;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import javax.persistence.PersistenceException;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReadOnlyModeTest {
+
+    private static EntityManagerFactory emf;
+
+    @BeforeAll
+    static void setUp() {
+        emf = Persistence.createEntityManagerFactory("test");
+    }
+
+    @AfterAll
+    static void tearDown() {
+        emf.close();
+    }
+
+    @Test
+    void readsAndCommitsWithoutChanges() {
+        Long id = goods("pen");
+        inReadOnly(em -> {
+            Goods goods = em.find(Goods.class, id);
+            assertEquals("pen", goods.getName());
+            assertEquals(1, em.createQuery("select g from Goods g where g.id = :id", Goods.class)
+                    .setParameter("id", id)
+                    .getResultList().size());
+        });
+    }
+
+    @Test
+    void changedEntityFailsOnCommit() {
+        Long id = goods("pen");
+        EntityManager em = ReadOnlyMode.open(emf);
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        em.find(Goods.class, id).setName("changed");
+
+        PersistenceException e = assertThrows(PersistenceException.class, tx::commit);
+        assertTrue(message(e).contains("Goods#" + id + " [name]"), message(e));
+        assertFalse(tx.isActive());
+        em.close();
+        assertEquals("pen", nameOf(id));
+    }
+
+    @Test
+    void changedEntityFailsOnFlush() {
+        Long id = goods("pen");
+        inReadOnly(em -> {
+            em.find(Goods.class, id).setName("changed");
+            assertThrows(PersistenceException.class, em::flush);
+            em.getTransaction().setRollbackOnly();
+        });
+        assertEquals("pen", nameOf(id));
+    }
+
+    @Test
+    void valueSetBackIsNotAChange() {
+        Long id = goods("pen");
+        inReadOnly(em -> {
+            Goods goods = em.find(Goods.class, id);
+            goods.setName("changed");
+            goods.setName("pen");
+        });
+    }
+
+    @Test
+    void changedCollectionFailsOnCommit() {
+        Long id = goods("pen");
+        EntityManager em = ReadOnlyMode.open(emf);
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        em.find(Goods.class, id).getTags().add("new");
+
+        assertThrows(PersistenceException.class, tx::commit);
+        em.close();
+    }
+
+    @Test
+    void writesAreRejected() {
+        Long id = goods("pen");
+        inReadOnly(em -> {
+            assertThrows(PersistenceException.class, () -> em.persist(new Goods("new", 1)));
+            assertThrows(PersistenceException.class, () -> em.remove(em.find(Goods.class, id)));
+            assertThrows(PersistenceException.class, () -> em.createQuery("update Goods g set g.name = 'bulk'").executeUpdate());
+            assertThrows(PersistenceException.class, () -> em.createNativeQuery("delete from Goods").executeUpdate());
+            em.getTransaction().setRollbackOnly();
+        });
+        assertEquals("pen", nameOf(id));
+    }
+
+    @Test
+    void queryHintLoadsReadOnlyEntities() {
+        Long id = goods("pen");
+        EntityManager em = emf.createEntityManager();
+        Goods goods = ReadOnlyMode.query(em.createQuery("select g from Goods g where g.id = :id", Goods.class))
+                .setParameter("id", id)
+                .getSingleResult();
+
+        assertTrue(em.unwrap(Session.class).isReadOnly(goods));
+        em.close();
+    }
+
+    private static Long goods(String name) {
+        Goods goods = new Goods(name, 1);
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        em.persist(goods);
+        em.getTransaction().commit();
+        em.close();
+        return goods.getId();
+    }
+
+    private static String nameOf(Long id) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.find(Goods.class, id).getName();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static void inReadOnly(Consumer<EntityManager> work) {
+        EntityManager em = ReadOnlyMode.open(emf);
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            work.accept(em);
+            if (tx.getRollbackOnly()) {
+                tx.rollback();
+            } else {
+                tx.commit();
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    private static String message(Throwable e) {
+        StringBuilder message = new StringBuilder();
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            message.append(cause.getMessage()).append(' ');
+        }
+        return message.toString();
+    }
+}
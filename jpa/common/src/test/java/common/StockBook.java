@@ -0,0 +1,17 @@
+package common;
+
+import javax.persistence.Entity;
+
+@Entity
+public class StockBook extends StockItem {
+
+    private String author;
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public void setAuthor(String author) {
+        this.author = author;
+    }
+}
@@ -0,0 +1,226 @@
+package common;
+
+import common.StockReservation.Reservation;
+import common.StockReservation.Status;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import javax.persistence.PersistenceException;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StockReservationTest {
+
+    // 테스트에서는 직접 flush 한다.
+    private static final long NO_SCHEDULE = 3_600_000;
+
+    private static EntityManagerFactory emf;
+
+    @BeforeAll
+    static void setUp() {
+        emf = Persistence.createEntityManagerFactory("test");
+    }
+
+    @AfterAll
+    static void tearDown() {
+        emf.close();
+    }
+
+    @Test
+    void conditionalUpdateSellsOutWithoutOverselling() {
+        Long id = goods(3);
+        StockReservation stock = new StockReservation(emf, Goods.class, "stockAmount");
+
+        Reservation first = stock.reserve(id, 2);
+        stock.reserve(id, 1);
+        assertThrows(NotEnoughStockException.class, () -> stock.reserve(id, 1));
+        assertEquals(0, stockOf(id));
+
+        stock.release(first);
+        assertEquals(Status.RELEASED, first.getStatus());
+        assertEquals(2, stockOf(id));
+        assertThrows(IllegalStateException.class, () -> stock.release(first));
+    }
+
+    @Test
+    void conditionalUpdateOnSingleTableItem() {
+        StockBook book = new StockBook();
+        book.setStockQuantity(1);
+        inTransaction(em -> em.persist(book));
+        StockReservation stock = new StockReservation(emf, StockItem.class, "stockQuantity");
+
+        stock.confirm(stock.reserve(book.getId(), 1));
+        assertThrows(NotEnoughStockException.class, () -> stock.reserve(book.getId(), 1));
+        assertEquals(0, find(StockBook.class, book.getId()).getStockQuantity());
+    }
+
+    @Test
+    void bufferedReservationsReachTheDatabaseOnFlush() {
+        Long id = goods(10);
+        try (StockReservation stock = new StockReservation(emf, Goods.class, "stockAmount", 4, NO_SCHEDULE)) {
+            Reservation kept = stock.reserve(id, 3);
+            Reservation cancelled = stock.reserve(id, 2);
+            stock.confirm(kept);
+            assertEquals(10, stockOf(id));
+
+            // flush 전에 취소하면 DB 에는 아무 일도 없다.
+            stock.release(cancelled);
+            stock.flush();
+            assertEquals(7, stockOf(id));
+
+            // flush 후에 취소하면 다음 flush 에 되돌린다.
+            Reservation late = stock.reserve(id, 7);
+            assertThrows(NotEnoughStockException.class, () -> stock.reserve(id, 1));
+            stock.flush();
+            assertEquals(0, stockOf(id));
+            stock.release(late);
+            stock.flush();
+            assertEquals(7, stockOf(id));
+        }
+    }
+
+    @Test
+    void shortfallRejectsTheReservationsThatDoNotFit() {
+        Long id = goods(10);
+        try (StockReservation stock = new StockReservation(emf, Goods.class, "stockAmount", 4, NO_SCHEDULE)) {
+            Reservation first = stock.reserve(id, 2);
+            Reservation second = stock.reserve(id, 3);
+            Reservation third = stock.reserve(id, 4);
+            stock.confirm(third);
+
+            // 다른 곳에서 재고를 줄였다.
+            inTransaction(em -> em.createQuery("update Goods g set g.stockAmount = 5 where g.id = :id")
+                    .setParameter("id", id)
+                    .executeUpdate());
+
+            NotEnoughStockException e = assertThrows(NotEnoughStockException.class, stock::flush);
+            assertEquals("DB 재고가 부족해서 예약을 취소했습니다. [id=" + id + ", quantity=4]", e.getMessage());
+            assertEquals(Status.RESERVED, first.getStatus());
+            assertEquals(Status.RESERVED, second.getStatus());
+            assertEquals(Status.REJECTED, third.getStatus());
+            assertThrows(NotEnoughStockException.class, () -> stock.release(third));
+            assertEquals(0, stockOf(id));
+
+            // 메모리 재고도 DB 에 맞춰졌다.
+            assertThrows(NotEnoughStockException.class, () -> stock.reserve(id, 1));
+            stock.release(first);
+            stock.flush();
+            assertEquals(2, stockOf(id));
+            stock.reserve(id, 2);
+            assertThrows(NotEnoughStockException.class, () -> stock.reserve(id, 1));
+        }
+    }
+
+    @Test
+    void failedFlushKeepsEveryTakenReservation() {
+        Long a = goods(10);
+        Long b = goods(10);
+        try (StockReservation stock = new StockReservation(emf, Goods.class, "stockAmount", 4, NO_SCHEDULE)) {
+            stock.reserve(a, 1);
+            stock.reserve(b, 2);
+
+            // b 의 update 가 락 대기 시간을 넘겨서 실패한다.
+            assertThrows(PersistenceException.class, () -> whileLocked(b, stock::flush));
+            assertEquals(10, stockOf(a));
+            assertEquals(10, stockOf(b));
+
+            stock.flush();
+            assertEquals(9, stockOf(a));
+            assertEquals(8, stockOf(b));
+        }
+    }
+
+    @Test
+    void scheduledFlushSurvivesFailures() throws Exception {
+        Long id = goods(10);
+        try (StockReservation stock = new StockReservation(emf, Goods.class, "stockAmount", 2, 20)) {
+            whileLocked(id, () -> {
+                stock.reserve(id, 4);
+                sleep(1_000);
+                assertEquals(10, stockOf(id));
+            });
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (stockOf(id) != 6 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(6, stockOf(id));
+        }
+    }
+
+    @Test
+    void closeFlushesTheRemainingReservations() {
+        Long id = goods(10);
+        StockReservation stock = new StockReservation(emf, Goods.class, "stockAmount", 4, NO_SCHEDULE);
+        stock.reserve(id, 5);
+        stock.close();
+
+        assertEquals(5, stockOf(id));
+        assertThrows(IllegalStateException.class, () -> stock.reserve(id, 1));
+    }
+
+    private static Long goods(long stockAmount) {
+        Goods goods = new Goods("goods", stockAmount);
+        inTransaction(em -> em.persist(goods));
+        return goods.getId();
+    }
+
+    private static long stockOf(Long id) {
+        return find(Goods.class, id).getStockAmount();
+    }
+
+    private static <T> T find(Class<T> entityClass, Long id) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.find(entityClass, id);
+        } finally {
+            em.close();
+        }
+    }
+
+    private static void inTransaction(Consumer<EntityManager> work) {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            work.accept(em);
+            tx.commit();
+        } finally {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            em.close();
+        }
+    }
+
+    // 다른 트랜잭션이 row 락을 잡은 동안 실행한다.
+    private static void whileLocked(Long id, Runnable work) {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            em.createQuery("update Goods g set g.name = 'locked' where g.id = :id")
+                    .setParameter("id", id)
+                    .executeUpdate();
+            work.run();
+        } finally {
+            tx.rollback();
+            em.close();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package hellojpa;
 
+import common.Interned;
+
 import javax.persistence.Embeddable;
 import java.util.Objects;
 
 @Embeddable
+@Interned
 public class Address {
 
     private String city;
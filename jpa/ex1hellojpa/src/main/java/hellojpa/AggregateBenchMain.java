@@ -0,0 +1,100 @@
+package hellojpa;
+
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ *  em.persist / em.remove vs AggregateCascade
+ *      - Parent 하나에 Child children 건을 저장하고 지운다.
+ *      - 걸린 시간과 DB 왕복 수(JDBC 배치 실행 + 그 밖의 statement 실행)를 비교한다.
+ *
+ *  실행
+ *      java hellojpa.AggregateBenchMain 50000
+ */
+public class AggregateBenchMain {
+
+    private static final LongAdder ROUND_TRIPS = new LongAdder();
+
+    public static void main(String args[]) {
+        int children = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1");
+        properties.put("hibernate.show_sql", "false");
+        properties.put("hibernate.format_sql", "false");
+        properties.put("hibernate.use_sql_comments", "false");
+        properties.put("hibernate.generate_statistics", "true");
+        properties.put("hibernate.session.events.auto", RoundTripCounter.class.getName());
+
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("hello", properties);
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+
+        Long[] id = new Long[1];
+        measure(emf, statistics, "em.persist", (em, parent) -> em.persist(parent), children, id);
+        measure(emf, statistics, "em.remove", (em, parent) -> em.remove(em.find(Parent.class, id[0])), 0, id);
+
+        measure(emf, statistics, "AggregateCascade.persist", (em, parent) -> new AggregateCascade(em).persist(parent), children, id);
+        measure(emf, statistics, "AggregateCascade.remove", (em, parent) -> new AggregateCascade(em)
+                .remove(em.find(Parent.class, id[0]), "childList"), 0, id);
+
+        emf.close();
+    }
+
+    private static void measure(EntityManagerFactory emf, Statistics statistics, String name,
+                                BiConsumer<EntityManager, Parent> work, int children, Long[] id) {
+        Parent parent = new Parent();
+        parent.setName("parent");
+        for (int i = 0; i < children; i++) {
+            Child child = new Child();
+            child.setName("child" + i);
+            parent.addChild(child);
+        }
+
+        statistics.clear();
+        ROUND_TRIPS.reset();
+        long start = System.nanoTime();
+
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        work.accept(em, parent);
+        tx.commit();
+        em.close();
+
+        long elapsed = System.nanoTime() - start;
+        long roundTrips = ROUND_TRIPS.sum();
+        if (parent.getId() != null) {
+            id[0] = parent.getId();
+        }
+
+        EntityManager countEm = emf.createEntityManager();
+        long count = countEm.createQuery("select count(c) from Child c", Long.class).getSingleResult();
+        countEm.close();
+
+        System.out.println(String.format("%-25s %d ms, round trips %d, entity loads %d, child rows %d",
+                name, elapsed / 1_000_000, roundTrips, statistics.getEntityLoadCount(), count));
+    }
+
+    public static class RoundTripCounter extends BaseSessionEventListener {
+
+        @Override
+        public void jdbcExecuteBatchStart() {
+            ROUND_TRIPS.increment();
+        }
+
+        @Override
+        public void jdbcExecuteStatementStart() {
+            ROUND_TRIPS.increment();
+        }
+    }
+}
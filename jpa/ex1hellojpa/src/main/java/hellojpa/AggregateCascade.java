@@ -0,0 +1,218 @@
+package hellojpa;
+
+import org.hibernate.Session;
+import org.hibernate.engine.internal.ForeignKeys;
+import org.hibernate.engine.spi.CascadingActions;
+import org.hibernate.engine.spi.CascadeStyle;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.internal.PostDeleteEventListenerStandardImpl;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.jpa.event.spi.CallbackRegistry;
+import org.hibernate.jpa.event.spi.CallbackType;
+import org.hibernate.persister.collection.AbstractCollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.persister.entity.SingleTableEntityPersister;
+import org.hibernate.type.CollectionType;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+
+import javax.persistence.EntityManager;
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  큰 애그리거트(Parent - Child 수만 건)의 저장, 삭제
+ *      - em.remove(parent) 는 CascadeType.REMOVE 때문에 자식을 전부 읽어서 한 건씩 delete 한다.
+ *      - remove : 자식을 delete from CHILD where PARENT_ID = ? 한 번으로 지우고 부모만 em.remove 한다.
+ *      - persist : 세션의 JDBC 배치 크기를 batchSize 로 올려서 저장하고 flush 한 뒤 애그리거트를 분리한다.
+ *          : 자식 식별자는 시퀀스 allocationSize 를 batchSize 와 맞춰둔다. (Child)
+ *
+ *          AggregateCascade cascade = new AggregateCascade(em);
+ *          cascade.persist(parent);
+ *          cascade.remove(parent, "childList");
+ *
+ *  한 번에 지우지 못하는 경우 (em.remove(parent) 로 한 건씩 지운다.)
+ *      - 자식에 @PreRemove, @PostRemove 콜백이 있을 때 (@EntityListeners, orm.xml 기본 리스너 포함)
+ *      - PRE_DELETE, POST_DELETE, POST_COMMIT_DELETE 이벤트 리스너가 있을 때
+ *          : DeleteListenerScope 를 구현해서 자식 엔티티를 다루지 않는다고 한 리스너는 제외한다.
+ *      - 자식에 컬렉션이 있거나 다른 연관관계로 삭제가 전파될 때
+ *      - 자식이 SINGLE_TABLE 이 아닌 상속 구조이거나 외래 키 컬럼이 여러 개일 때
+ *
+ *  주의점
+ *      - remove, persist 후에는 넘겨준 애그리거트가 준영속 상태가 된다.
+ *      - remove 는 외래 키가 부모를 가리키는 자식을 영속성 컨텍스트에서 모두 분리한다. (컬렉션 밖에서 읽은 자식 포함)
+ *        자식에 외래 키 속성이 없으면(단방향 @OneToMany) 영속 상태인 자식 엔티티를 모두 분리한다.
+ */
+public class AggregateCascade {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final EntityManager em;
+
+    public AggregateCascade(EntityManager em) {
+        this.em = em;
+    }
+
+    public <T> T persist(T root) {
+        return persist(root, BATCH_SIZE);
+    }
+
+    public <T> T persist(T root, int batchSize) {
+        Session session = em.unwrap(Session.class);
+        Integer jdbcBatchSize = session.getJdbcBatchSize();
+
+        session.setJdbcBatchSize(batchSize);
+        try {
+            em.persist(root);
+            em.flush();
+        } finally {
+            session.setJdbcBatchSize(jdbcBatchSize);
+        }
+
+        // 영속성 컨텍스트에 자식 수만 건과 스냅샷이 남지 않게 한다.
+        em.detach(root);
+        return root;
+    }
+
+    /**
+     *  @return 자식을 한 번에 지웠으면 true, em.remove 로 한 건씩 지웠으면 false
+     */
+    public boolean remove(Object root, String collectionAttribute) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        EntityPersister rootPersister = session.getEntityPersister(null, root);
+        AbstractCollectionPersister collectionPersister = (AbstractCollectionPersister) session.getFactory()
+                .getMetamodel().collectionPersister(rootPersister.getEntityName() + "." + collectionAttribute);
+
+        if (!canDeleteAtOnce(session.getFactory(), collectionPersister)) {
+            em.remove(root);
+            return false;
+        }
+
+        Class<?> rootClass = rootPersister.getMappedClass();
+        Serializable id = rootPersister.getIdentifier(root, session);
+        SingleTableEntityPersister childPersister = (SingleTableEntityPersister) collectionPersister.getElementPersister();
+
+        String keyColumn = collectionPersister.getKeyColumnNames()[0];
+
+        em.flush();
+
+        // 지울 row 의 자식 엔티티가 영속성 컨텍스트에 남지 않게 한다. (cascade 대상, 이후 조회 결과에서도 빠진다.)
+        int keyProperty = keyProperty(childPersister, keyColumn);
+        for (Map.Entry<Object, EntityEntry> entry : session.getPersistenceContext().reentrantSafeEntityEntries()) {
+            Object entity = entry.getKey();
+            if (childPersister.getMappedClass().isInstance(entity)
+                    && (keyProperty < 0 || id.equals(parentId(session, childPersister, keyProperty, entity)))) {
+                em.detach(entity);
+            }
+        }
+        em.detach(root);
+
+        em.unwrap(Session.class)
+                .createNativeQuery("delete from " + childPersister.getTableName()
+                        + " where " + keyColumn + " = ?")
+                .setParameter(1, id)
+                .addSynchronizedEntityClass(childPersister.getMappedClass())
+                .executeUpdate();
+
+        // 자식이 없으므로 컬렉션 초기화는 빈 결과 한 번으로 끝난다.
+        em.remove(em.find(rootClass, id));
+        return true;
+    }
+
+    // 외래 키 컬럼을 매핑한 @ManyToOne 속성 (없으면 -1)
+    private static int keyProperty(EntityPersister childPersister, String keyColumn) {
+        Type[] propertyTypes = childPersister.getPropertyTypes();
+        for (int i = 0; i < propertyTypes.length; i++) {
+            String[] columns = ((SingleTableEntityPersister) childPersister).getPropertyColumnNames(i);
+            if (propertyTypes[i].isEntityType() && columns.length == 1 && columns[0].equalsIgnoreCase(keyColumn)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Serializable parentId(SessionImplementor session, EntityPersister childPersister, int keyProperty, Object child) {
+        Object parent = childPersister.getPropertyValue(child, keyProperty);
+        if (parent == null) {
+            return null;
+        }
+        String parentEntityName = ((EntityType) childPersister.getPropertyTypes()[keyProperty]).getAssociatedEntityName();
+        return ForeignKeys.getEntityIdentifierIfNotUnsaved(parentEntityName, parent, session);
+    }
+
+    private static boolean canDeleteAtOnce(SessionFactoryImplementor factory, AbstractCollectionPersister collectionPersister) {
+        if (!collectionPersister.isOneToMany() || collectionPersister.getKeyColumnNames().length != 1
+                || !(collectionPersister.getElementPersister() instanceof SingleTableEntityPersister)) {
+            return false;
+        }
+
+        EntityPersister childPersister = collectionPersister.getElementPersister();
+        if (hasDeleteListeners(factory, childPersister) || hasRemoveCallbacks(factory, childPersister.getMappedClass())) {
+            return false;
+        }
+
+        Type[] propertyTypes = childPersister.getPropertyTypes();
+        CascadeStyle[] cascadeStyles = childPersister.getEntityMetamodel().getCascadeStyles();
+        for (int i = 0; i < propertyTypes.length; i++) {
+            if (propertyTypes[i] instanceof CollectionType || cascadeStyles[i].doCascade(CascadingActions.DELETE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasDeleteListeners(SessionFactoryImplementor factory, EntityPersister childPersister) {
+        EventListenerRegistry registry = factory.getServiceRegistry().getService(EventListenerRegistry.class);
+        List<EventType<?>> eventTypes = Arrays.asList(EventType.PRE_DELETE, EventType.POST_DELETE, EventType.POST_COMMIT_DELETE);
+        for (EventType<?> eventType : eventTypes) {
+            for (Object listener : registry.getEventListenerGroup(eventType).listeners()) {
+                // @PostRemove 콜백을 부르는 기본 리스너 (콜백은 hasRemoveCallbacks 에서 확인한다.)
+                if (listener instanceof PostDeleteEventListenerStandardImpl) {
+                    continue;
+                }
+                if (!(listener instanceof DeleteListenerScope) || ((DeleteListenerScope) listener).handlesDeleteOf(childPersister)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     *  @PreRemove, @PostRemove 콜백 (엔티티 메서드, @EntityListeners, orm.xml 기본 리스너)
+     *      - 하이버네이트가 부트스트랩 때 모아둔 CallbackRegistry 에 물어본다.
+     *      - 공개 API 로 꺼낼 수 없어서 리플렉션으로 꺼낸다. 실패하면 콜백이 있다고 보고 한 건씩 지운다.
+     */
+    private static boolean hasRemoveCallbacks(SessionFactoryImplementor factory, Class<?> entityClass) {
+        CallbackRegistry callbackRegistry = callbackRegistry(factory);
+        return callbackRegistry == null
+                || callbackRegistry.hasRegisteredCallbacks(entityClass, CallbackType.PRE_REMOVE)
+                || callbackRegistry.hasRegisteredCallbacks(entityClass, CallbackType.POST_REMOVE);
+    }
+
+    private static CallbackRegistry callbackRegistry(SessionFactoryImplementor factory) {
+        EventListenerRegistry registry = factory.getServiceRegistry().getService(EventListenerRegistry.class);
+        try {
+            Method getter = registry.getClass().getDeclaredMethod("getCallbackRegistry");
+            getter.setAccessible(true);
+            return (CallbackRegistry) getter.invoke(registry);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     *  특정 엔티티의 삭제에만 반응하는 이벤트 리스너
+     *      - handlesDeleteOf 가 false 인 엔티티는 리스너가 있어도 한 번에 지운다.
+     */
+    public interface DeleteListenerScope {
+
+        boolean handlesDeleteOf(EntityPersister persister);
+    }
+}
@@ -0,0 +1,76 @@
+package hellojpa;
+
+import org.hibernate.HibernateException;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.spi.EventSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ *  세션(트랜잭션)별로 모아두었다가 커밋 직전에 같은 커넥션으로 보내는 변경
+ *      - 이벤트 리스너에서 get() 으로 이번 트랜잭션의 버퍼를 꺼내서 모은다.
+ *          : 처음 꺼낼 때 커밋 직전(flush 후)에 write(), 트랜잭션이 끝나면 버리도록 등록한다.
+ *          : 롤백하면 보내지 않고 버린다.
+ *      - write() 는 모아둔 것을 보내고 버퍼를 비운다. (트랜잭션 중간에 먼저 보낼 때도 사용)
+ *      - 엔티티 SQL 과 같은 트랜잭션이라 함께 커밋되고 함께 롤백된다.
+ *
+ *          private static final BeforeCompletionBuffer<Deltas> PENDING =
+ *                  new BeforeCompletionBuffer<>(Deltas::new, (deltas, session, connection) -> deltas.apply(connection),
+ *                          "구매 집계를 반영하지 못했습니다.");
+ */
+public class BeforeCompletionBuffer<T> {
+
+    @FunctionalInterface
+    public interface Writer<T> {
+        void write(T pending, SharedSessionContractImplementor session, Connection connection) throws SQLException;
+    }
+
+    private final Map<SharedSessionContractImplementor, T> pending = new ConcurrentHashMap<>();
+
+    private final Supplier<T> factory;
+    private final Writer<T> writer;
+    private final String failure;
+
+    public BeforeCompletionBuffer(Supplier<T> factory, Writer<T> writer, String failure) {
+        this.factory = factory;
+        this.writer = writer;
+        this.failure = failure;
+    }
+
+    public T get(EventSource session) {
+        return pending.computeIfAbsent(session, key -> {
+            session.getActionQueue().registerProcess(completing -> write(session));
+            session.getActionQueue().registerProcess((success, completed) -> pending.remove(session));
+            return factory.get();
+        });
+    }
+
+    /**
+     *  모아둔 것을 지금 트랜잭션의 커넥션으로 보낸다.
+     *      - 이후 변경은 새 버퍼에 모은다.
+     */
+    public void write(SharedSessionContractImplementor session) {
+        T buffer = pending.remove(session);
+        if (buffer == null) {
+            return;
+        }
+
+        Connection connection = session.getJdbcCoordinator().getLogicalConnection().getPhysicalConnection();
+        try {
+            writer.write(buffer, session, connection);
+        } catch (SQLException e) {
+            throw new HibernateException(failure, e);
+        }
+    }
+
+    /**
+     *  모아둔 것을 보내지 않고 버린다.
+     */
+    public void discard(SharedSessionContractImplementor session) {
+        pending.remove(session);
+    }
+}
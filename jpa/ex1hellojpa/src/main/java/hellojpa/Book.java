@@ -1,9 +1,13 @@
 package hellojpa;
 
+import lombok.Getter;
+import lombok.Setter;
+
 import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
 
 @Entity
+@Getter @Setter
 @DiscriminatorValue(value="B")
 public class Book extends Item {
 
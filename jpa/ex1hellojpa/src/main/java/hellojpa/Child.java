@@ -5,8 +5,10 @@ import javax.persistence.*;
 @Entity
 public class Child {
 
+    // 식별자를 1000개씩 미리 받아둔다. (AggregateCascade 배치 크기와 같게)
     @Id
-    @GeneratedValue
+    @SequenceGenerator(name = "CHILD_SEQ_GENERATOR", sequenceName = "CHILD_SEQ", allocationSize = 1000)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "CHILD_SEQ_GENERATOR")
     @Column(name = "CHILD_ID")
     private Long id;
 
@@ -0,0 +1,132 @@
+package hellojpa;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  매번 Criteria 생성 vs CriteriaCache
+ *      - 이름, 도시, 우편번호 조건이 있거나 없는 8가지 조합을 돌아가며 검색한다.
+ *      - 데이터는 적게 넣어서 쿼리 생성 비용이 드러나게 한다.
+ *
+ *  실행
+ *      java hellojpa.CriteriaBenchMain 100000
+ */
+public class CriteriaBenchMain {
+
+    private static final CriteriaCache<Member> MEMBER_SEARCH = new CriteriaCache<>(Member.class);
+
+    public static void main(String args[]) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1");
+        properties.put("hibernate.show_sql", "false");
+        properties.put("hibernate.format_sql", "false");
+        properties.put("hibernate.use_sql_comments", "false");
+
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("hello", properties);
+
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        for (int i = 0; i < 10; i++) {
+            Member member = new Member();
+            member.setName("kim" + i);
+            member.setHomeAddress(new Address("city" + i % 2, "street", "1000" + i % 3));
+            em.persist(member);
+        }
+        tx.commit();
+        em.close();
+
+        for (int round = 0; round < 2; round++) {
+            measure(emf, "criteria", iterations, CriteriaBenchMain::searchWithCriteria);
+            measure(emf, "CriteriaCache", iterations, CriteriaBenchMain::searchWithCache);
+        }
+        System.out.println("cached shapes : " + MEMBER_SEARCH.size());
+
+        emf.close();
+    }
+
+    private static List<Member> searchWithCriteria(EntityManager em, String name, String city, String zipcode) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Member> query = cb.createQuery(Member.class);
+        Root<Member> m = query.from(Member.class);
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (name != null) {
+            predicates.add(cb.equal(m.get("name"), name));
+        }
+        if (city != null) {
+            predicates.add(cb.equal(m.get("homeAddress").get("city"), city));
+        }
+        if (zipcode != null) {
+            predicates.add(cb.equal(m.get("homeAddress").get("zipcode"), zipcode));
+        }
+        return em.createQuery(query.select(m).where(predicates.toArray(new Predicate[0]))).getResultList();
+    }
+
+    private static List<Member> searchWithCache(EntityManager em, String name, String city, String zipcode) {
+        TypedQuery<Member> query = MEMBER_SEARCH.createQuery(em, CriteriaCache.key(name != null, city != null, zipcode != null), cb -> {
+            CriteriaQuery<Member> criteria = cb.createQuery(Member.class);
+            Root<Member> m = criteria.from(Member.class);
+
+            List<Predicate> predicates = new ArrayList<>();
+            if (name != null) {
+                predicates.add(cb.equal(m.get("name"), cb.parameter(String.class, "name")));
+            }
+            if (city != null) {
+                predicates.add(cb.equal(m.get("homeAddress").get("city"), cb.parameter(String.class, "city")));
+            }
+            if (zipcode != null) {
+                predicates.add(cb.equal(m.get("homeAddress").get("zipcode"), cb.parameter(String.class, "zipcode")));
+            }
+            return criteria.select(m).where(predicates.toArray(new Predicate[0]));
+        });
+
+        if (name != null) {
+            query.setParameter("name", name);
+        }
+        if (city != null) {
+            query.setParameter("city", city);
+        }
+        if (zipcode != null) {
+            query.setParameter("zipcode", zipcode);
+        }
+        return query.getResultList();
+    }
+
+    private static void measure(EntityManagerFactory emf, String name, int iterations, Search search) {
+        EntityManager em = emf.createEntityManager();
+        long rows = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            rows += search.search(em,
+                    (i & 1) != 0 ? "kim" + i % 10 : null,
+                    (i & 2) != 0 ? "city" + i % 2 : null,
+                    (i & 4) != 0 ? "1000" + i % 3 : null).size();
+            if (i % 1000 == 0) {
+                em.clear();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        em.close();
+
+        System.out.println(String.format("%-15s queries : %d, rows : %d, avg : %.1f us",
+                name, iterations, rows, elapsed / 1000.0 / iterations));
+    }
+
+    private interface Search {
+        List<Member> search(EntityManager em, String name, String city, String zipcode);
+    }
+}
@@ -0,0 +1,89 @@
+package hellojpa;
+
+import org.hibernate.query.Query;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Parameter;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ *  Criteria 컴파일 캐시
+ *      - em.createQuery(criteriaQuery) 는 호출할 때마다 Criteria 트리를 JPQL 문자열로 다시 만든다.
+ *      - 검색 조건 조합(구조 키) 별로 한 번만 Criteria를 만들고
+ *        만들어진 JPQL 문자열을 저장해둔다.
+ *      - 다음부터는 em.createQuery(jpql) 로 만들어서 쿼리 플랜 캐시를 바로 사용하고 파라미터만 바인딩한다.
+ *      - 값은 cb.parameter(String.class, "name") 처럼 이름 있는 파라미터로 둔다.
+ *        Criteria에 직접 넣은 값(cb.equal(m.get("name"), "kim"))은 처음 값이 상수로 저장된다.
+ *
+ *          private static final CriteriaCache<Member> MEMBER_SEARCH = new CriteriaCache<>(Member.class);
+ *
+ *          List<Member> members = MEMBER_SEARCH.createQuery(em, CriteriaCache.key(name != null, age != null), cb -> {
+ *              CriteriaQuery<Member> query = cb.createQuery(Member.class);
+ *              Root<Member> m = query.from(Member.class);
+ *              List<Predicate> predicates = new ArrayList<>();
+ *              if (name != null) predicates.add(cb.equal(m.get("name"), cb.parameter(String.class, "name")));
+ *              ...
+ *              return query.select(m).where(predicates.toArray(new Predicate[0]));
+ *          })
+ *          .setParameter("name", name)
+ *          .getResultList();
+ *
+ *  주의점
+ *      - 같은 키에는 항상 같은 모양의 Criteria를 만들어야 한다.
+ */
+public class CriteriaCache<T> {
+
+    private final Class<T> resultClass;
+    private final Map<Object, Compiled> cache = new ConcurrentHashMap<>();
+
+    public CriteriaCache(Class<T> resultClass) {
+        this.resultClass = resultClass;
+    }
+
+    public static Object key(Object... parts) {
+        return Arrays.asList(parts);
+    }
+
+    public TypedQuery<T> createQuery(EntityManager em, Object key, Function<CriteriaBuilder, CriteriaQuery<T>> criteria) {
+        Compiled compiled = cache.computeIfAbsent(key, k -> compile(em, criteria));
+
+        TypedQuery<T> query = em.createQuery(compiled.jpql, resultClass);
+        compiled.constants.forEach(query::setParameter);
+        return query;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    private Compiled compile(EntityManager em, Function<CriteriaBuilder, CriteriaQuery<T>> criteria) {
+        Query<?> query = em.createQuery(criteria.apply(em.getCriteriaBuilder())).unwrap(Query.class);
+
+        // Criteria에 직접 넣은 값은 하이버네이트가 이미 바인딩해둔다. (param0, param1, ...)
+        Map<String, Object> constants = new HashMap<>();
+        for (Parameter<?> parameter : query.getParameters()) {
+            if (parameter.getName() != null && query.isBound(parameter)) {
+                constants.put(parameter.getName(), query.getParameterValue(parameter.getName()));
+            }
+        }
+        return new Compiled(query.getQueryString(), constants);
+    }
+
+    private static class Compiled {
+
+        private final String jpql;
+        private final Map<String, Object> constants;
+
+        Compiled(String jpql, Map<String, Object> constants) {
+            this.jpql = jpql;
+            this.constants = constants;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package hellojpa;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *  값 타입 컬렉션 변경 비용
+ *      - Member members 건, 회원마다 FAVORITE_FOOD foods 건을 넣는다.
+ *      - 회원마다 음식을 하나 추가하고 하나 지운 새 Set을 setFavorateFood() 로 넣는다.
+ *      - 컬렉션을 통째로 지우고 다시 넣었는지(recreate), 바뀐 row만 반영했는지(update) 와
+ *        준비한 statement 수(= JDBC 배치 수에 가깝다)를 본다.
+ *
+ *  실행
+ *      java hellojpa.ElementCollectionBenchMain 1000 100
+ */
+public class ElementCollectionBenchMain {
+
+    private static final int FLUSH_SIZE = 100;
+
+    public static void main(String args[]) {
+        int members = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int foods = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1");
+        properties.put("hibernate.show_sql", "false");
+        properties.put("hibernate.format_sql", "false");
+        properties.put("hibernate.use_sql_comments", "false");
+        properties.put("hibernate.generate_statistics", "true");
+
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("hello", properties);
+        insertMembers(emf, members, foods);
+
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        long start = System.nanoTime();
+
+        tx.begin();
+        for (int from = 1; from <= members; from += FLUSH_SIZE) {
+            List<Member> findMembers = em.createQuery("select distinct m from Member m" +
+                    " join fetch m.favorateFood" +
+                    " where m.id between :from and :to", Member.class)
+                    .setParameter("from", (long) from)
+                    .setParameter("to", (long) from + FLUSH_SIZE - 1)
+                    .getResultList();
+
+            for (Member member : findMembers) {
+                Set<String> favorateFood = new HashSet<>(member.getFavorateFood());
+                favorateFood.remove("food0");
+                favorateFood.add("food" + foods);
+                member.setFavorateFood(favorateFood);
+            }
+            em.flush();
+            em.clear();
+        }
+        tx.commit();
+        em.close();
+
+        long count = emf.createEntityManager()
+                .createQuery("select count(f) from Member m join m.favorateFood f", Long.class)
+                .getSingleResult();
+
+        System.out.println(String.format("%d ms, collection recreate %d, update %d, prepared statements %d, rows %d",
+                (System.nanoTime() - start) / 1_000_000,
+                statistics.getCollectionRecreateCount(), statistics.getCollectionUpdateCount(),
+                statistics.getPrepareStatementCount(), count));
+
+        emf.close();
+    }
+
+    private static void insertMembers(EntityManagerFactory emf, int members, int foods) {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        em.createNativeQuery("insert into Member (MEMBER_ID, USERNAME) " +
+                "select X, 'member' || X from system_range(1, ?)")
+                .setParameter(1, members)
+                .executeUpdate();
+        em.createNativeQuery("insert into FAVORITE_FOOD (MEMBER_ID, FOOD_NAME) " +
+                "select m.X, 'food' || f.X from system_range(1, ?) m, system_range(0, ?) f")
+                .setParameter(1, members)
+                .setParameter(2, foods - 1)
+                .executeUpdate();
+        tx.commit();
+        em.close();
+    }
+}
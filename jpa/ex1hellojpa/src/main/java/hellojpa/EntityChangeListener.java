@@ -0,0 +1,26 @@
+package hellojpa;
+
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ *  엔티티 insert / update / delete 후에 같은 트랜잭션에서 반응하는 리스너
+ *      - 커밋 후에만 반응하는 리스너가 아니다. (requiresPostCommitHandling = false)
+ *      - 하이버네이트 5.4.9 는 이름이 잘못된 requiresPostCommitHanding 을 추상 메서드로 남겨두어서
+ *        여기서 한 번만 구현하고 requiresPostCommitHandling 으로 넘긴다.
+ */
+public abstract class EntityChangeListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    @Override
+    @Deprecated
+    public final boolean requiresPostCommitHanding(EntityPersister persister) {
+        return requiresPostCommitHandling(persister);
+    }
+}
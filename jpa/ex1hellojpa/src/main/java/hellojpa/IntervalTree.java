@@ -0,0 +1,127 @@
+package hellojpa;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ *  메모리에 올려둔 목록의 기간 검색 (PeriodIndex 와 같은 가상 트리)
+ *      - 값을 FORK_NODE 별로 묶고, 노드마다 시작 키 오름차순 / 종료 키 내림차순으로 정렬해 둔다.
+ *      - 경로의 노드(최대 42개)에서 조건이 깨질 때까지만 읽으므로 O(트리 높이 + 결과 수) 이다.
+ *
+ *          IntervalTree<Member> tree = new IntervalTree<>(members, Member::getWorkPeriod);
+ *          List<Member> working = tree.activeAt(now);
+ *
+ *  주의점
+ *      - 만든 뒤에는 바뀌지 않는다. 목록이 바뀌면 새로 만든다.
+ */
+public class IntervalTree<T> {
+
+    private final Function<T, Period> period;
+    private final NavigableMap<Long, Node<T>> nodes = new TreeMap<>();
+    private final int size;
+
+    public IntervalTree(Collection<T> values, Function<T, Period> period) {
+        this.period = period;
+
+        Map<Long, List<Entry<T>>> grouped = new HashMap<>();
+        int size = 0;
+        for (T value : values) {
+            Period p = period.apply(value);
+            if (p == null) {
+                continue;
+            }
+            Entry<T> entry = new Entry<>(value, PeriodIndex.lowerKey(p.getStartDate()), PeriodIndex.upperKey(p.getEndDate()));
+            grouped.computeIfAbsent(PeriodIndex.forkNode(entry.lower, entry.upper), node -> new ArrayList<>()).add(entry);
+            size++;
+        }
+        grouped.forEach((node, entries) -> nodes.put(node, new Node<>(entries)));
+        this.size = size;
+    }
+
+    public List<T> activeAt(LocalDateTime time) {
+        return overlapping(time, time);
+    }
+
+    public List<T> overlapping(LocalDateTime from, LocalDateTime to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("to가 from보다 앞입니다. " + from + " ~ " + to);
+        }
+        long lower = PeriodIndex.key(from);
+        long upper = PeriodIndex.key(to);
+        List<T> result = new ArrayList<>();
+
+        for (long key : PeriodIndex.leftNodes(lower)) {
+            Node<T> node = nodes.get(key);
+            if (node != null) {
+                for (Entry<T> entry : node.byUpperDesc) {
+                    if (entry.upper < lower) {
+                        break;
+                    }
+                    add(result, entry, from, to);
+                }
+            }
+        }
+        for (long key : PeriodIndex.rightNodes(upper)) {
+            Node<T> node = nodes.get(key);
+            if (node != null) {
+                for (Entry<T> entry : node.byLowerAsc) {
+                    if (entry.lower > upper) {
+                        break;
+                    }
+                    add(result, entry, from, to);
+                }
+            }
+        }
+        for (Node<T> node : nodes.subMap(lower, true, upper, true).values()) {
+            for (Entry<T> entry : node.byLowerAsc) {
+                add(result, entry, from, to);
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // 키는 초 단위라서 초 미만은 Period 로 한 번 더 확인한다.
+    private void add(List<T> result, Entry<T> entry, LocalDateTime from, LocalDateTime to) {
+        if (period.apply(entry.value).overlaps(from, to)) {
+            result.add(entry.value);
+        }
+    }
+
+    private static final class Entry<T> {
+
+        private final T value;
+        private final long lower;
+        private final long upper;
+
+        Entry(T value, long lower, long upper) {
+            this.value = value;
+            this.lower = lower;
+            this.upper = upper;
+        }
+    }
+
+    private static final class Node<T> {
+
+        private final List<Entry<T>> byLowerAsc;
+        private final List<Entry<T>> byUpperDesc;
+
+        Node(List<Entry<T>> entries) {
+            this.byLowerAsc = new ArrayList<>(entries);
+            this.byLowerAsc.sort(Comparator.comparingLong(entry -> entry.lower));
+            this.byUpperDesc = new ArrayList<>(entries);
+            this.byUpperDesc.sort(Comparator.comparingLong((Entry<T> entry) -> entry.upper).reversed());
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package hellojpa;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -19,4 +20,13 @@ public abstract class Item {
     private String name;
     private int price;
 
+    /**
+     *  @DiscriminatorColumn(DTYPE) 을 읽기 전용으로 한 번 더 매핑한다.
+     *      - select i.id, i.dtype from Item i 는 Item 테이블만 읽는다. (type(i) 는 자식 테이블을 모두 조인한다.)
+     *      - 값은 하이버네이트가 insert 할 때 넣는다. (PolymorphicLoader)
+     */
+    @Setter(AccessLevel.NONE)
+    @Column(name = "DTYPE", insertable = false, updatable = false)
+    private String dtype;
+
 }
\ No newline at end of file
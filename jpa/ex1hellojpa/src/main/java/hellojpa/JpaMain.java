@@ -1,7 +1,6 @@
 package hellojpa;
 
 import javax.persistence.*;
-import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 import java.util.List;
@@ -9,7 +8,7 @@ import java.util.Set;
 
 public class JpaMain {
 
-
+    private static final CriteriaCache<Member> MEMBER_SEARCH = new CriteriaCache<>(Member.class);
 
    public static void main(String args[]) {
         EntityManagerFactory emf = Persistence.createEntityManagerFactory("hello");
@@ -46,13 +45,23 @@ public class JpaMain {
                 System.out.println("member : " + m.getName());
             }
 
-            //Criteria
-            CriteriaBuilder cb = em.getCriteriaBuilder();
-            CriteriaQuery<Member> query = cb.createQuery(Member.class);
+            /**
+             *  대용량 조회는 StreamingQuery로 한 row씩 처리한다.
+             *      - detachInterval 마다 영속성 컨텍스트를 비우기 때문에 (앞에서 조회한 엔티티도 준영속이 된다.)
+             *        row 수와 상관없이 힙 사용량이 일정하다.
+             */
+            long streamCount = new StreamingQuery<>(em, "select m from Member m where m.name like '%kim%'", Member.class)
+                    .forEach(member -> System.out.println("member : " + member.getName()));
+            System.out.println("streamCount : " + streamCount);
 
-            Root<Member> m = query.from(Member.class);
-            CriteriaQuery<Member> cq = query.select(m).where(cb.equal(m.get("username"), "kim"));
-            List<Member> cqMember = em.createQuery(cq).getResultList();
+            //Criteria : 조건 조합마다 한 번만 JPQL로 만들고 다음부터는 파라미터만 바인딩한다.
+            List<Member> cqMember = MEMBER_SEARCH.createQuery(em, CriteriaCache.key("name"), cb -> {
+                CriteriaQuery<Member> query = cb.createQuery(Member.class);
+                Root<Member> m = query.from(Member.class);
+                return query.select(m).where(cb.equal(m.get("name"), cb.parameter(String.class, "name")));
+            })
+                    .setParameter("name", "kim")
+                    .getResultList();
 
             tx.commit();
         }catch (Exception e){
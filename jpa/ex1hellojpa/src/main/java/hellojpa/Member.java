@@ -7,6 +7,10 @@ import java.util.List;
 import java.util.Set;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "IDX_MEMBER_WORK_UPPER", columnList = "FORK_NODE, UPPER_KEY"),
+        @Index(name = "IDX_MEMBER_WORK_LOWER", columnList = "FORK_NODE, LOWER_KEY")
+})
 public class Member {
 
     @Id
@@ -14,21 +18,33 @@ public class Member {
     @Column(name = "MEMBER_ID")
     private Long id;
 
+    @TrigramIndexed
     @Column(name = "USERNAME")
     private String name;
 
     @Embedded
     private Address homeAddress;
 
+    // 근무 기간 (PeriodIndex.activeAt(em, Member.class, "workPeriod", now))
+    @Embedded
+    private Period workPeriod;
+
     /**
      *  create table FAVORITE_FOOD (
      *        MEMBER_ID bigint not null,
-     *         FOOD_NAME varchar(255)
+     *         FOOD_NAME varchar(255) not null,
+     *         primary key (MEMBER_ID, FOOD_NAME)
      *     )
+     *
+     *  변경된 row만 반영한다.
+     *      - Set 에서 add / remove 한 값만 insert / delete 한다. (MEMBER_ID, FOOD_NAME 으로 row를 찾는다.)
+     *      - 컬렉션 인스턴스를 새 Set으로 바꾸면 전체를 지우고 다시 넣는다. (recreate)
+     *        그래서 setFavorateFood() 는 인스턴스를 바꾸지 않고 내용만 바꾼다.
+     *      - 여러 회원의 insert 는 hibernate.jdbc.batch_size 만큼 배치로 나간다.
      */
     @ElementCollection
     @CollectionTable(name = "FAVORITE_FOOD", joinColumns = @JoinColumn(name = "MEMBER_ID"))
-    @Column(name = "FOOD_NAME")
+    @Column(name = "FOOD_NAME", nullable = false)
     private Set<String> favorateFood = new HashSet<>();
 
     /**
@@ -38,13 +54,24 @@ public class Member {
      *         street varchar(255),
      *         zipcode varchar(255)
      *     )
+     *
+     *  List(bag)는 row를 구분할 식별자가 없어서 하나만 지워도 전체를 지우고 다시 넣는다.
+     *  Set 이고 not null 컬럼이 하나라도 있으면 favorateFood 처럼 바뀐 row만 반영한다.
      */
 //    @ElementCollection
 //    @CollectionTable(name = "ADDRESS", joinColumns = @JoinColumn(name = "MEMBER_ID"))
 //    private List<Address> addressHistory = new ArrayList<>();
 
+    /**
+     *  일대다 단방향
+     *      - 외래 키가 ADDRESS 테이블에 있어서 기본값이면 insert 후에 update ADDRESS set MEMBER_ID=? 가 한 번 더 나간다.
+     *      - nullable = false : ADDRESS insert 에 MEMBER_ID를 같이 넣는다.
+     *      - updatable = false : 컬렉션 쪽에서 외래 키를 다시 update 하지 않는다.
+     *        -> 주소 N건 저장이 insert N건(배치)으로 끝난다.
+     *      - 다른 회원으로 주소를 옮기는 것은 안 된다. (삭제하고 새로 추가한다, orphanRemoval)
+     */
     @OneToMany(cascade = CascadeType.ALL, orphanRemoval = true)
-    @JoinColumn(name = "MEMBER_ID")
+    @JoinColumn(name = "MEMBER_ID", nullable = false, updatable = false)
     private List<AddressEntity> addressHistory = new ArrayList<>();
 
     public Long getId() {
@@ -71,12 +98,21 @@ public class Member {
         this.homeAddress = homeAddress;
     }
 
+    public Period getWorkPeriod() {
+        return workPeriod;
+    }
+
+    public void setWorkPeriod(Period workPeriod) {
+        this.workPeriod = workPeriod;
+    }
+
     public Set<String> getFavorateFood() {
         return favorateFood;
     }
 
     public void setFavorateFood(Set<String> favorateFood) {
-        this.favorateFood = favorateFood;
+        this.favorateFood.retainAll(favorateFood);
+        this.favorateFood.addAll(favorateFood);
     }
 
     public List<AddressEntity> getAddressHistory() {
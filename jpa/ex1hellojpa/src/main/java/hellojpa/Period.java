@@ -1,43 +1,82 @@
 package hellojpa;
 
+import common.Interned;
+
+import javax.persistence.Column;
 import javax.persistence.Embeddable;
 import java.time.LocalDateTime;
 
+/**
+ *  불변 값 타입 (@Interned 로 여러 엔티티가 같은 인스턴스를 공유한다.)
+ *      - 기간을 바꿀 때는 new Period(...) 로 통째로 교체한다.
+ *      - startDate, endDate 가 null 이면 그쪽으로 끝이 없는 기간이다.
+ *
+ *  구간 인덱스 (PeriodIndex)
+ *      - 생성자에서 LOWER_KEY, UPPER_KEY(초 단위 키), FORK_NODE 를 같이 계산해서 저장한다.
+ *      - 값을 바꾸려면 새 인스턴스를 만들어야 하므로 인덱스 컬럼이 기간과 어긋나지 않는다.
+ */
 @Embeddable
+@Interned
 public class Period {
 
     private LocalDateTime startDate;
     private LocalDateTime endDate;
 
+    @Column(name = "LOWER_KEY")
+    private Long lowerKey;
+
+    @Column(name = "UPPER_KEY")
+    private Long upperKey;
+
+    @Column(name = "FORK_NODE")
+    private Long forkNode;
+
     public Period() {
     }
 
     public Period(LocalDateTime startDate, LocalDateTime endDate) {
+        if (startDate != null && endDate != null && endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("endDate가 startDate보다 앞입니다. " + startDate + " ~ " + endDate);
+        }
         this.startDate = startDate;
         this.endDate = endDate;
+        this.lowerKey = PeriodIndex.lowerKey(startDate);
+        this.upperKey = PeriodIndex.upperKey(endDate);
+        this.forkNode = PeriodIndex.forkNode(lowerKey, upperKey);
     }
 
+    /**
+     *  currentTime 이 기간 안에 있으면 true (시작, 끝 포함)
+     */
     public boolean isWork(LocalDateTime currentTime){
-        //업무중이라면 true를 반환
-        //그렇지 않다면 False를 반환한다.
+        return overlaps(currentTime, currentTime);
+    }
 
-        //응집성 있게 메소드를 만들 수 있다.
-        return true;
+    /**
+     *  [from, to] 와 한 순간이라도 겹치면 true
+     */
+    public boolean overlaps(LocalDateTime from, LocalDateTime to) {
+        return (startDate == null || !startDate.isAfter(to))
+                && (endDate == null || !endDate.isBefore(from));
     }
 
     public LocalDateTime getStartDate() {
         return startDate;
     }
 
-    public void setStartDate(LocalDateTime startDate) {
-        this.startDate = startDate;
-    }
-
     public LocalDateTime getEndDate() {
         return endDate;
     }
 
-    public void setEndDate(LocalDateTime endDate) {
-        this.endDate = endDate;
+    public Long getLowerKey() {
+        return lowerKey;
+    }
+
+    public Long getUpperKey() {
+        return upperKey;
+    }
+
+    public Long getForkNode() {
+        return forkNode;
     }
 }
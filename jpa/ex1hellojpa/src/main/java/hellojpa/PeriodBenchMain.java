@@ -0,0 +1,145 @@
+package hellojpa;
+
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ *  시각 t 에 근무 중인 회원 찾기
+ *      - DB : startDate <= t and endDate >= t  vs  PeriodIndex.activeAt
+ *      - 메모리 : 목록 전체 isWork() 필터  vs  IntervalTree.activeAt
+ *      - 근무 기간은 1시간 ~ 30일 동안이고, 시작일은 회원 20만 명당 10년 구간에 고르게 퍼진다.
+ *        회원 수가 늘어도 한 시각에 근무 중인 회원 수(결과 수)는 비슷하므로 회원 수에 따른 검색 시간만 비교된다.
+ *        (종료일이 없는 기간은 회원 수에 비례해서 결과가 늘어나므로 넣지 않는다.)
+ *
+ *  실행
+ *      java -Xmx3g hellojpa.PeriodBenchMain 1000000
+ */
+public class PeriodBenchMain {
+
+    private static final int SEARCHES = 20;
+    private static final int WARMUP = 3;
+    private static final LocalDateTime BASE = LocalDateTime.of(2010, 1, 1, 0, 0);
+    private static final long SECONDS_PER_MEMBER = 10L * 365 * 24 * 60 * 60 / 200_000;
+
+    public static void main(String args[]) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:period;DB_CLOSE_DELAY=-1");
+        properties.put("hibernate.show_sql", "false");
+        properties.put("hibernate.format_sql", "false");
+        properties.put("hibernate.use_sql_comments", "false");
+
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("hello", properties);
+        long seconds = rows * SECONDS_PER_MEMBER;
+        insertMembers(emf, rows, seconds);
+
+        Random random = new Random(7);
+        List<LocalDateTime> times = new ArrayList<>();
+        for (int i = 0; i < SEARCHES; i++) {
+            times.add(BASE.plusSeconds((long) (random.nextDouble() * seconds)));
+        }
+
+        measure(emf, "range scan", times, (em, time) -> em.createQuery("select m from Member m" +
+                " where (m.workPeriod.startDate is null or m.workPeriod.startDate <= :time)" +
+                " and (m.workPeriod.endDate is null or m.workPeriod.endDate >= :time)", Member.class)
+                .setParameter("time", time)
+                .getResultList());
+        measure(emf, "PeriodIndex", times, (em, time) -> PeriodIndex.activeAt(em, Member.class, "workPeriod", time));
+
+        // 작업 목록 (working set) : 전체를 메모리에 올려두고 찾는다.
+        EntityManager em = emf.createEntityManager();
+        List<Member> members = em.createQuery("select m from Member m", Member.class).getResultList();
+        em.close();
+
+        long start = System.nanoTime();
+        IntervalTree<Member> tree = new IntervalTree<>(members, Member::getWorkPeriod);
+        System.out.println(String.format("IntervalTree build : %d ms, size : %d", (System.nanoTime() - start) / 1_000_000, tree.size()));
+
+        measure("filter", times, time -> {
+            List<Member> result = new ArrayList<>();
+            for (Member member : members) {
+                if (member.getWorkPeriod().isWork(time)) {
+                    result.add(member);
+                }
+            }
+            return result;
+        });
+        measure("IntervalTree", times, tree::activeAt);
+
+        emf.close();
+    }
+
+    private static void insertMembers(EntityManagerFactory emf, int rows, long seconds) {
+        Random random = new Random(42);
+
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement insert = connection.prepareStatement("insert into Member" +
+                    " (MEMBER_ID, startDate, endDate, LOWER_KEY, UPPER_KEY, FORK_NODE) values (?, ?, ?, ?, ?, ?)")) {
+                for (int i = 1; i <= rows; i++) {
+                    LocalDateTime startDate = BASE.plusSeconds((long) (random.nextDouble() * seconds));
+                    LocalDateTime endDate = startDate.plusSeconds(3600 + random.nextInt(30 * 24 * 60 * 60));
+                    Period period = new Period(startDate, endDate);
+
+                    insert.setLong(1, i);
+                    insert.setTimestamp(2, Timestamp.valueOf(startDate));
+                    insert.setTimestamp(3, Timestamp.valueOf(endDate));
+                    insert.setLong(4, period.getLowerKey());
+                    insert.setLong(5, period.getUpperKey());
+                    insert.setLong(6, period.getForkNode());
+                    insert.addBatch();
+                    if (i % 1000 == 0) {
+                        insert.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+        });
+        tx.commit();
+        em.close();
+    }
+
+    private static void measure(EntityManagerFactory emf, String name, List<LocalDateTime> times,
+                                BiFunction<EntityManager, LocalDateTime, List<Member>> search) {
+        EntityManager em = emf.createEntityManager();
+        measure(name, times, time -> {
+            List<Member> result = search.apply(em, time);
+            em.clear();
+            return result;
+        });
+        em.close();
+    }
+
+    private static void measure(String name, List<LocalDateTime> times, Function<LocalDateTime, List<Member>> search) {
+        for (int i = 0; i < WARMUP; i++) {
+            times.forEach(search::apply);
+        }
+
+        long rows = 0;
+        long start = System.nanoTime();
+        for (LocalDateTime time : times) {
+            rows += search.apply(time).size();
+        }
+        long elapsed = (System.nanoTime() - start) / times.size();
+
+        System.out.println(String.format("%-15s searches : %d, rows : %d, avg : %.3f ms",
+                name, times.size(), rows, elapsed / 1_000_000.0));
+    }
+}
@@ -0,0 +1,177 @@
+package hellojpa;
+
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.query.NativeQuery;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  기간 검색 (Relational Interval Tree)
+ *      - where p.startDate <= :t and p.endDate >= :t 는 시작일, 종료일 중 하나로만 범위를 좁힐 수 있어서
+ *        row 가 많으면 절반 가까이를 읽는다.
+ *      - 시각을 초 단위 키로 바꾸고 [1, 2^42) 위에 가상의 이진 트리를 둔다. (루트 2^41)
+ *        기간은 루트에서 내려가다가 처음으로 기간 안에 들어오는 노드(FORK_NODE)에 붙는다. (Period 생성자에서 계산)
+ *      - 시각 t 를 찾을 때는 루트에서 t 까지 내려가는 경로의 노드(최대 42개)만 본다.
+ *          : 노드 < t 이면 그 노드의 기간 중 UPPER_KEY >= t 인 것
+ *          : 노드 > t 이면 그 노드의 기간 중 LOWER_KEY <= t 인 것
+ *          : 경로에 없는 노드의 기간은 t 를 포함할 수 없다.
+ *        노드마다 (FORK_NODE, UPPER_KEY), (FORK_NODE, LOWER_KEY) 인덱스 범위 조회 한 번씩이므로
+ *        전체 row 수와 상관없이 O(트리 높이 * log n + 결과 수) 이다.
+ *      - 노드별 조회를 union all 로 묶어서 엔티티를 한 번에 읽고, Period 로 한 번 더 확인한다. (초 미만 오차)
+ *
+ *          List<Member> members = PeriodIndex.activeAt(em, Member.class, "workPeriod", now);
+ *          List<Member> members = PeriodIndex.overlapping(em, Member.class, "workPeriod", from, to);
+ *
+ *  설정
+ *      - 엔티티에 @Index(columnList = "FORK_NODE, UPPER_KEY"), @Index(columnList = "FORK_NODE, LOWER_KEY") (Member 참고)
+ *      - 메모리에 올려둔 목록은 IntervalTree 로 같은 방식으로 찾는다.
+ *
+ *  주의점
+ *      - 네이티브 쿼리, 벌크 연산으로 기간을 넣을 때는 세 컬럼을 같이 채워야 한다. (lowerKey(), upperKey(), forkNode())
+ *      - select * 로 엔티티를 읽으므로 테이블 하나에 매핑된 엔티티만 된다. (JOINED 상속 X)
+ */
+public class PeriodIndex {
+
+    static final long ROOT = 1L << 41;
+    static final long MIN_KEY = 1;
+    static final long MAX_KEY = (1L << 42) - 1;
+
+    // 1970-01-01 이전 시각도 양수 키가 되도록 더한다. (약 ±34000년)
+    private static final long OFFSET = 1L << 40;
+
+    // 경로 길이가 검색할 때마다 달라서 SQL이 매번 새로 파싱되지 않도록 이 개수까지 빈 노드(0)로 채운다.
+    private static final int HEIGHT = 42;
+    private static final long EMPTY_NODE = 0;
+
+    public static long key(LocalDateTime time) {
+        long key = time.toEpochSecond(ZoneOffset.UTC) + OFFSET;
+        return Math.max(MIN_KEY, Math.min(MAX_KEY, key));
+    }
+
+    public static long lowerKey(LocalDateTime startDate) {
+        return startDate == null ? MIN_KEY : key(startDate);
+    }
+
+    public static long upperKey(LocalDateTime endDate) {
+        return endDate == null ? MAX_KEY : key(endDate);
+    }
+
+    /**
+     *  [lower, upper] 가 처음으로 포함하는 노드
+     */
+    public static long forkNode(long lower, long upper) {
+        long node = ROOT;
+        for (long step = ROOT >> 1; step > 0; step >>= 1) {
+            if (upper < node) {
+                node -= step;
+            } else if (lower > node) {
+                node += step;
+            } else {
+                break;
+            }
+        }
+        return node;
+    }
+
+    /**
+     *  루트에서 key 까지의 경로 중 key 보다 작은 노드
+     */
+    static List<Long> leftNodes(long key) {
+        return path(key, true);
+    }
+
+    /**
+     *  루트에서 key 까지의 경로 중 key 보다 큰 노드
+     */
+    static List<Long> rightNodes(long key) {
+        return path(key, false);
+    }
+
+    private static List<Long> path(long key, boolean left) {
+        List<Long> nodes = new ArrayList<>();
+        long node = ROOT;
+        for (long step = ROOT >> 1; node != key; step >>= 1) {
+            if (node < key) {
+                if (left) {
+                    nodes.add(node);
+                }
+                node += step;
+            } else {
+                if (!left) {
+                    nodes.add(node);
+                }
+                node -= step;
+            }
+        }
+        return nodes;
+    }
+
+    private static List<Long> padded(List<Long> nodes) {
+        while (nodes.size() < HEIGHT) {
+            nodes.add(EMPTY_NODE);
+        }
+        return nodes;
+    }
+
+    public static <T> List<T> activeAt(EntityManager em, Class<T> entityClass, String attribute, LocalDateTime time) {
+        return overlapping(em, entityClass, attribute, time, time);
+    }
+
+    public static <T> List<T> overlapping(EntityManager em, Class<T> entityClass, String attribute,
+                                          LocalDateTime from, LocalDateTime to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("to가 from보다 앞입니다. " + from + " ~ " + to);
+        }
+        long lower = key(from);
+        long upper = key(to);
+
+        AbstractEntityPersister persister = (AbstractEntityPersister) em.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class).getMetamodel().entityPersister(entityClass);
+        String select = "select * from " + persister.getTableName() + " where ";
+        String forkNode = persister.getPropertyColumnNames(attribute + ".forkNode")[0];
+        String lowerKey = persister.getPropertyColumnNames(attribute + ".lowerKey")[0];
+        String upperKey = persister.getPropertyColumnNames(attribute + ".upperKey")[0];
+
+        StringBuilder sql = new StringBuilder();
+        List<Long> parameters = new ArrayList<>();
+        for (long node : padded(leftNodes(lower))) {
+            sql.append(select).append(forkNode).append(" = ?").append(parameters.size() + 1)
+                    .append(" and ").append(upperKey).append(" >= ?").append(parameters.size() + 2)
+                    .append(" union all ");
+            parameters.add(node);
+            parameters.add(lower);
+        }
+        for (long node : padded(rightNodes(upper))) {
+            sql.append(select).append(forkNode).append(" = ?").append(parameters.size() + 1)
+                    .append(" and ").append(lowerKey).append(" <= ?").append(parameters.size() + 2)
+                    .append(" union all ");
+            parameters.add(node);
+            parameters.add(upper);
+        }
+        sql.append(select).append(forkNode).append(" between ?").append(parameters.size() + 1)
+                .append(" and ?").append(parameters.size() + 2);
+        parameters.add(lower);
+        parameters.add(upper);
+
+        NativeQuery<T> query = em.unwrap(Session.class).createNativeQuery(sql.toString(), entityClass)
+                .addSynchronizedEntityClass(entityClass);
+        for (int i = 0; i < parameters.size(); i++) {
+            query.setParameter(i + 1, parameters.get(i));
+        }
+
+        List<T> result = new ArrayList<>();
+        for (T entity : query.getResultList()) {
+            Period period = (Period) persister.getPropertyValue(entity, attribute);
+            if (period != null && period.overlaps(from, to)) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,89 @@
+package hellojpa;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ *  select i from Item i vs PolymorphicLoader
+ *      - Album, Book, Movie 를 rows / 3 건씩 넣고 전체 또는 가격 조건으로 읽는다.
+ *
+ *  실행
+ *      java hellojpa.PolymorphicBenchMain 300000
+ */
+public class PolymorphicBenchMain {
+
+    private static final int ITERATIONS = 5;
+
+    public static void main(String args[]) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 300_000;
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1");
+        properties.put("hibernate.show_sql", "false");
+        properties.put("hibernate.format_sql", "false");
+        properties.put("hibernate.use_sql_comments", "false");
+
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("hello", properties);
+        insertItems(emf, rows);
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("price", 9000);
+
+        measure(emf, "select i from Item i", em -> em.createQuery("select i from Item i", Item.class)
+                .getResultList());
+        measure(emf, "PolymorphicLoader", em -> new PolymorphicLoader(em)
+                .list(Item.class, "i", null, null));
+
+        measure(emf, "select i (price)", em -> em.createQuery("select i from Item i where i.price > :price", Item.class)
+                .setParameter("price", 9000)
+                .getResultList());
+        measure(emf, "PolymorphicLoader (price)", em -> new PolymorphicLoader(em)
+                .list(Item.class, "i", "i.price > :price", params));
+
+        emf.close();
+    }
+
+    private static void insertItems(EntityManagerFactory emf, int rows) {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        em.createNativeQuery("insert into Item (id, name, price, DTYPE) " +
+                "select X, 'item' || X, mod(X, 10000), case mod(X, 3) when 0 then 'A' when 1 then 'B' else 'M' end " +
+                "from system_range(1, ?)")
+                .setParameter(1, rows)
+                .executeUpdate();
+        em.createNativeQuery("insert into Album (id, artist) select id, 'artist' from Item where DTYPE = 'A'").executeUpdate();
+        em.createNativeQuery("insert into Book (id, author, isbn) select id, 'author', 'isbn' from Item where DTYPE = 'B'").executeUpdate();
+        em.createNativeQuery("insert into Movie (id, director, actor) select id, 'director', 'actor' from Item where DTYPE = 'M'").executeUpdate();
+        tx.commit();
+        em.close();
+    }
+
+    private static void measure(EntityManagerFactory emf, String name, Function<EntityManager, List<Item>> read) {
+        int count = 0;
+        run(emf, read);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            count = run(emf, read);
+        }
+        long elapsed = (System.nanoTime() - start) / ITERATIONS;
+
+        System.out.println(String.format("%-27s rows : %d, avg : %d ms", name, count, elapsed / 1_000_000));
+    }
+
+    private static int run(EntityManagerFactory emf, Function<EntityManager, List<Item>> read) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return read.apply(em).size();
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package hellojpa;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  JOINED 상속 다형성 조회
+ *      - select i from Item i 는 자식 테이블(Album, Book, Movie)을 모두 left outer join 한다.
+ *        자식 타입이 늘어날수록 조인이 늘어난다.
+ *      - 1. 부모 테이블에서 식별자와 DTYPE만 읽는다.
+ *          : select i.id, i.dtype from Item i where ...
+ *      - 2. 결과에 있는 DTYPE 별로 해당 타입만 한 번씩 읽는다.
+ *          : 1000건 이하 : select i from Book i where i.id in :ids
+ *          : 그보다 많으면 : select i from Book i where (같은 조건)
+ *          : 어느 쪽이든 Item inner join Book 만 한다.
+ *      - 결과는 1번 쿼리의 순서대로 돌려준다.
+ *
+ *          List<Item> items = new PolymorphicLoader(em).list(Item.class, "i", "i.price > :price", params);
+ *
+ *  주의점
+ *      - 부모 엔티티에 DTYPE 컬럼을 읽기 전용 속성으로 매핑해야 한다. (Item.dtype)
+ *      - where 조건에는 부모 엔티티의 속성만 사용한다. (자식 속성을 쓰면 다시 조인이 생긴다.)
+ */
+public class PolymorphicLoader {
+
+    // 이보다 많으면 IN 절 대신 같은 조건으로 다시 조회한다.
+    private static final int IN_LIMIT = 1000;
+
+    private final EntityManager em;
+
+    public PolymorphicLoader(EntityManager em) {
+        this.em = em;
+    }
+
+    public <T> List<T> list(Class<T> rootClass, String alias, String whereClause, Map<String, Object> params) {
+        AbstractEntityPersister persister = (AbstractEntityPersister) em.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class).getMetamodel().entityPersister(rootClass);
+        String idAttribute = persister.getIdentifierPropertyName();
+        String discriminatorAttribute = discriminatorAttribute(persister);
+
+        TypedQuery<Object[]> rowQuery = em.createQuery("select " + alias + "." + idAttribute + ", " + alias + "." + discriminatorAttribute
+                + " from " + persister.getEntityName() + " " + alias
+                + (whereClause == null ? "" : " where " + whereClause), Object[].class);
+        if (params != null) {
+            params.forEach(rowQuery::setParameter);
+        }
+        List<Object[]> rows = rowQuery.getResultList();
+
+        // DTYPE -> 식별자 목록
+        Map<Object, List<Object>> idsByDiscriminator = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            idsByDiscriminator.computeIfAbsent(row[1], key -> new ArrayList<>()).add(row[0]);
+        }
+
+        Map<Object, T> entities = new HashMap<>();
+        for (Map.Entry<Object, List<Object>> entry : idsByDiscriminator.entrySet()) {
+            String entityName = persister.getSubclassForDiscriminatorValue(entry.getKey());
+            if (entityName == null) {
+                throw new IllegalStateException("알 수 없는 DTYPE 입니다. " + entry.getKey());
+            }
+
+            List<Object> ids = entry.getValue();
+            List<T> loaded;
+            if (ids.size() <= IN_LIMIT) {
+                loaded = em.createQuery("select " + alias + " from " + entityName + " " + alias
+                        + " where " + alias + "." + idAttribute + " in :ids", rootClass)
+                        .setParameter("ids", ids)
+                        .getResultList();
+            } else {
+                TypedQuery<T> query = em.createQuery("select " + alias + " from " + entityName + " " + alias
+                        + (whereClause == null ? "" : " where " + whereClause), rootClass);
+                if (params != null) {
+                    params.forEach(query::setParameter);
+                }
+                loaded = query.getResultList();
+            }
+
+            for (T entity : loaded) {
+                entities.put(persister.getIdentifier(entity, em.unwrap(SharedSessionContractImplementor.class)), entity);
+            }
+        }
+
+        List<T> result = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            T entity = entities.get(row[0]);
+            if (entity != null) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     *  DTYPE 컬럼에 매핑된 부모 엔티티 속성 이름
+     */
+    private static String discriminatorAttribute(AbstractEntityPersister persister) {
+        String discriminatorColumn = persister.getDiscriminatorColumnName();
+        for (String propertyName : persister.getPropertyNames()) {
+            if (Arrays.asList(persister.getPropertyColumnNames(propertyName)).contains(discriminatorColumn)) {
+                return propertyName;
+            }
+        }
+        throw new IllegalStateException(persister.getEntityName() + " 에 " + discriminatorColumn
+                + " 컬럼을 읽기 전용 속성으로 매핑해야 합니다.");
+    }
+}
@@ -0,0 +1,340 @@
+package hellojpa;
+
+import hellojpa.PurchaseSummary.Dimension;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.jpa.QueryHints;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+
+import javax.persistence.EntityManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  MemberProduct 구매 집계 (materialized aggregate)
+ *      - 대시보드에서 회원별 누적 구매액, 상품별 판매량을 볼 때마다
+ *        MemberProduct 전체를 sum / group by 하지 않도록 PURCHASE_SUMMARY 에 미리 더해둔다.
+ *      - MemberProduct insert / update / delete 이벤트에서 (회원, 상품, 주문일) 별 변화량을 모은다. (Listener)
+ *      - 커밋 직전(flush 후)에 같은 트랜잭션으로 집계 row 마다 update 한 번씩만 보낸다.
+ *          : 주문 1000건이 같은 상품이면 update 1000번이 아니라 1번
+ *          : 키 순서로 보내서 트랜잭션끼리 락 순서가 같다. (데드락 방지)
+ *          : 트랜잭션 끝에 보내므로 인기 상품 row 의 락을 잡고 있는 시간이 짧다.
+ *          : 처음 생기는 집계 row 는 insert 한다. 다른 트랜잭션이 먼저 넣었으면(중복 키) 되돌리고 update 한다.
+ *      - 조회는 집계 row 하나만 읽는다.
+ *
+ *          PurchaseSummary summary = PurchaseAggregates.member(em, memberId);
+ *          List<PurchaseSummary> products = PurchaseAggregates.list(em, Dimension.PRODUCT);
+ *
+ *  설정 (persistence.xml)
+ *      - hibernate.ejb.event.post-insert = hellojpa.PurchaseAggregates$Listener (post-update, post-delete 도 같이)
+ *          : 리스너가 여러 개이면 " ," 로 구분한다. (hellojpa.TrigramIndex$Listener ,hellojpa.PurchaseAggregates$Listener)
+ *      - 어긋났을 때(벌크 연산, 네이티브 쿼리, 리스너 없이 넣은 데이터)는 rebuild() 로 다시 만든다.
+ *
+ *  주의점
+ *      - 준영속 엔티티를 session.update() 로 바꾸면 이전 값을 몰라서 예외가 난다. (em.merge() 를 사용한다.)
+ */
+public class PurchaseAggregates {
+
+    private static final String UPDATE = "update PURCHASE_SUMMARY set ORDER_COUNT = ORDER_COUNT + ?, UNITS = UNITS + ?, AMOUNT = AMOUNT + ?" +
+            " where DIMENSION = ? and DIMENSION_KEY = ?";
+    private static final String INSERT = "insert into PURCHASE_SUMMARY (DIMENSION, DIMENSION_KEY, ORDER_COUNT, UNITS, AMOUNT) values (?, ?, ?, ?, ?)";
+    private static final String EXISTS = "select 1 from PURCHASE_SUMMARY where DIMENSION = ? and DIMENSION_KEY = ?";
+
+    // 세션(트랜잭션)별로 모아둔 변화량
+    private static final BeforeCompletionBuffer<Deltas> PENDING = new BeforeCompletionBuffer<>(Deltas::new,
+            (deltas, session, connection) -> deltas.apply(connection), "구매 집계를 반영하지 못했습니다.");
+
+    private static final LongAdder WRITES = new LongAdder();
+
+    public static PurchaseSummary member(EntityManager em, Long memberId) {
+        return find(em, Dimension.MEMBER, String.valueOf(memberId));
+    }
+
+    public static PurchaseSummary product(EntityManager em, Long productId) {
+        return find(em, Dimension.PRODUCT, String.valueOf(productId));
+    }
+
+    public static PurchaseSummary day(EntityManager em, LocalDate day) {
+        return find(em, Dimension.DAY, day.toString());
+    }
+
+    public static List<PurchaseSummary> list(EntityManager em, Dimension dimension) {
+        return em.createQuery("select s from PurchaseSummary s where s.dimension = :dimension", PurchaseSummary.class)
+                .setParameter("dimension", dimension)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .getResultList();
+    }
+
+    private static PurchaseSummary find(EntityManager em, Dimension dimension, String dimensionKey) {
+        List<PurchaseSummary> result = em.createQuery("select s from PurchaseSummary s" +
+                " where s.dimension = :dimension and s.dimensionKey = :dimensionKey", PurchaseSummary.class)
+                .setParameter("dimension", dimension)
+                .setParameter("dimensionKey", dimensionKey)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .getResultList();
+        return result.isEmpty() ? new PurchaseSummary(dimension, dimensionKey) : result.get(0);
+    }
+
+    /**
+     *  집계 row 를 보낸 횟수 (insert + update)
+     */
+    public static long writes() {
+        return WRITES.sum();
+    }
+
+    /**
+     *  MemberProduct 전체를 group by 해서 집계를 다시 만든다. (트랜잭션 안에서 호출)
+     */
+    public static void rebuild(EntityManager em) {
+        em.flush();
+        Session session = em.unwrap(Session.class);
+        // 방금 flush 한 변경은 group by 에 이미 들어가므로 모아둔 변화량은 버린다.
+        PENDING.discard(session.unwrap(SharedSessionContractImplementor.class));
+
+        AbstractEntityPersister persister = (AbstractEntityPersister) em.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class).getMetamodel().entityPersister(MemberProduct.class);
+        String table = persister.getTableName();
+        String member = persister.getPropertyColumnNames("member")[0];
+        String product = persister.getPropertyColumnNames("product")[0];
+        String count = persister.getPropertyColumnNames("count")[0];
+        String price = persister.getPropertyColumnNames("price")[0];
+        String day = "cast(" + persister.getPropertyColumnNames("orderDateTime")[0] + " as date)";
+
+        session.doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("delete from PURCHASE_SUMMARY");
+                String[][] dimensions = {
+                        {Dimension.MEMBER.name(), member},
+                        {Dimension.PRODUCT.name(), product},
+                        {Dimension.DAY.name(), day}};
+                for (String[] dimension : dimensions) {
+                    String key = "cast(" + dimension[1] + " as varchar)";
+                    statement.executeUpdate("insert into PURCHASE_SUMMARY (DIMENSION, DIMENSION_KEY, ORDER_COUNT, UNITS, AMOUNT)" +
+                            " select '" + dimension[0] + "', " + key + ", count(*)," +
+                            " sum(" + count + "), sum(cast(" + count + " as bigint) * " + price + ")" +
+                            " from " + table + " where " + dimension[1] + " is not null group by " + key);
+                }
+            }
+        });
+    }
+
+    private static void collect(EventSource session, EntityPersister persister, Object[] state, int sign) {
+        // 커밋하면 반영하고, 롤백하면 버린다.
+        Deltas deltas = PENDING.get(session);
+
+        Object member = state[persister.getEntityMetamodel().getPropertyIndex("member")];
+        Object product = state[persister.getEntityMetamodel().getPropertyIndex("product")];
+        int count = (Integer) state[persister.getEntityMetamodel().getPropertyIndex("count")];
+        int price = (Integer) state[persister.getEntityMetamodel().getPropertyIndex("price")];
+        LocalDateTime orderDateTime = (LocalDateTime) state[persister.getEntityMetamodel().getPropertyIndex("orderDateTime")];
+
+        long units = sign * (long) count;
+        long amount = sign * (long) count * price;
+        if (member != null) {
+            deltas.add(Dimension.MEMBER, String.valueOf(id(session, member)), sign, units, amount);
+        }
+        if (product != null) {
+            deltas.add(Dimension.PRODUCT, String.valueOf(id(session, product)), sign, units, amount);
+        }
+        if (orderDateTime != null) {
+            deltas.add(Dimension.DAY, orderDateTime.toLocalDate().toString(), sign, units, amount);
+        }
+    }
+
+    private static Object id(SharedSessionContractImplementor session, Object entity) {
+        if (entity instanceof HibernateProxy) {
+            return ((HibernateProxy) entity).getHibernateLazyInitializer().getIdentifier();
+        }
+        return session.getEntityPersister(null, entity).getIdentifier(entity, session);
+    }
+
+    /**
+     *  (차원, 키) -> {row 수, 수량, 금액} 변화량
+     */
+    private static class Deltas {
+
+        private final Map<Dimension, TreeMap<String, long[]>> rows = new EnumMap<>(Dimension.class);
+
+        void add(Dimension dimension, String key, long orders, long units, long amount) {
+            long[] delta = rows.computeIfAbsent(dimension, d -> new TreeMap<>()).computeIfAbsent(key, k -> new long[3]);
+            delta[0] += orders;
+            delta[1] += units;
+            delta[2] += amount;
+        }
+
+        void apply(Connection connection) throws SQLException {
+            List<Object[]> changed = new ArrayList<>();
+            rows.forEach((dimension, keys) -> keys.forEach((key, delta) -> {
+                if (delta[0] != 0 || delta[1] != 0 || delta[2] != 0) {
+                    changed.add(new Object[]{dimension, key, delta});
+                }
+            }));
+            if (changed.isEmpty()) {
+                return;
+            }
+
+            try (PreparedStatement update = connection.prepareStatement(UPDATE)) {
+                for (Object[] row : changed) {
+                    bindUpdate(update, row);
+                    update.addBatch();
+                }
+                int[] counts = update.executeBatch();
+                WRITES.add(changed.size());
+
+                // 처음 생기는 집계 row 는 insert
+                List<Object[]> missing = new ArrayList<>();
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == 0 || counts[i] == Statement.SUCCESS_NO_INFO && !exists(connection, changed.get(i))) {
+                        missing.add(changed.get(i));
+                    }
+                }
+                if (!missing.isEmpty()) {
+                    insert(connection, update, missing);
+                }
+            }
+        }
+
+        private void bindUpdate(PreparedStatement update, Object[] row) throws SQLException {
+            long[] delta = (long[]) row[2];
+            update.setLong(1, delta[0]);
+            update.setLong(2, delta[1]);
+            update.setLong(3, delta[2]);
+            update.setString(4, row[0].toString());
+            update.setString(5, (String) row[1]);
+        }
+
+        /**
+         *  드라이버가 배치 결과를 SUCCESS_NO_INFO 로 돌려주면 update 된 row 가 있는지 다시 읽는다.
+         *      - 같은 트랜잭션이라 방금 update 한 row 가 보인다.
+         */
+        private boolean exists(Connection connection, Object[] row) throws SQLException {
+            try (PreparedStatement exists = connection.prepareStatement(EXISTS)) {
+                exists.setString(1, row[0].toString());
+                exists.setString(2, (String) row[1]);
+                try (ResultSet rs = exists.executeQuery()) {
+                    return rs.next();
+                }
+            }
+        }
+
+        /**
+         *  update 와 insert 사이에 다른 트랜잭션이 같은 키를 먼저 넣으면 중복 키로 실패한다.
+         *      - 세이브포인트까지 되돌리고 row 마다 insert 를 다시 시도한다. 중복 키면 update 한다.
+         */
+        private void insert(Connection connection, PreparedStatement update, List<Object[]> missing) throws SQLException {
+            try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+                Savepoint savepoint = connection.setSavepoint();
+                try {
+                    for (Object[] row : missing) {
+                        bindInsert(insert, row);
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                    WRITES.add(missing.size());
+                    return;
+                } catch (SQLException e) {
+                    if (!isDuplicateKey(e)) {
+                        throw e;
+                    }
+                    insert.clearBatch();
+                    connection.rollback(savepoint);
+                }
+
+                for (Object[] row : missing) {
+                    Savepoint rowSavepoint = connection.setSavepoint();
+                    try {
+                        bindInsert(insert, row);
+                        insert.executeUpdate();
+                    } catch (SQLException e) {
+                        if (!isDuplicateKey(e)) {
+                            throw e;
+                        }
+                        connection.rollback(rowSavepoint);
+                        bindUpdate(update, row);
+                        if (update.executeUpdate() != 1) {
+                            throw new HibernateException("구매 집계 row 를 찾지 못했습니다. " + row[0] + " " + row[1], e);
+                        }
+                    }
+                    WRITES.increment();
+                }
+            }
+        }
+
+        private void bindInsert(PreparedStatement insert, Object[] row) throws SQLException {
+            long[] delta = (long[]) row[2];
+            insert.setString(1, row[0].toString());
+            insert.setString(2, (String) row[1]);
+            insert.setLong(3, delta[0]);
+            insert.setLong(4, delta[1]);
+            insert.setLong(5, delta[2]);
+        }
+
+        // 무결성 제약 위반 (SQLState 23xxx, H2 23505)
+        private static boolean isDuplicateKey(SQLException e) {
+            for (SQLException next = e; next != null; next = next.getNextException()) {
+                if (next.getSQLState() != null && next.getSQLState().startsWith("23")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     *  MemberProduct 가 바뀔 때 변화량을 모은다.
+     *      - update : 이전 값을 빼고 새 값을 더한다. (회원, 상품, 주문일이 바뀌어도 맞는다.)
+     */
+    public static class Listener extends EntityChangeListener implements AggregateCascade.DeleteListenerScope {
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            if (event.getEntity() instanceof MemberProduct) {
+                collect(event.getSession(), event.getPersister(), event.getState(), 1);
+            }
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            if (!(event.getEntity() instanceof MemberProduct)) {
+                return;
+            }
+            if (event.getOldState() == null) {
+                throw new HibernateException("이전 값을 알 수 없어서 구매 집계를 고칠 수 없습니다. merge() 를 사용하세요. MemberProduct#" + event.getId());
+            }
+            collect(event.getSession(), event.getPersister(), event.getOldState(), -1);
+            collect(event.getSession(), event.getPersister(), event.getState(), 1);
+        }
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            if (event.getEntity() instanceof MemberProduct) {
+                collect(event.getSession(), event.getPersister(), event.getDeletedState(), -1);
+            }
+        }
+
+        @Override
+        public boolean handlesDeleteOf(EntityPersister persister) {
+            return MemberProduct.class.isAssignableFrom(persister.getMappedClass());
+        }
+    }
+}
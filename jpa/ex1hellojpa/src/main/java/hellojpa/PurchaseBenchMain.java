@@ -0,0 +1,205 @@
+package hellojpa;
+
+import hellojpa.PurchaseSummary.Dimension;
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ *  MemberProduct 대시보드 조회
+ *      - group by : 회원 한 명의 누적 구매액, 전체 회원별 누적 구매액을 MemberProduct 에서 sum / group by
+ *      - PurchaseAggregates : PURCHASE_SUMMARY 에서 바로 읽기
+ *      - 쓰기 비용 : 리스너 있음 / 없음으로 MemberProduct 를 persist (트랜잭션마다 100건, 흩어진 주문 / 몰린 주문)
+ *      - rebuild : JDBC 로 넣은 데이터(리스너 X)로 집계를 처음 만드는 시간
+ *
+ *  실행
+ *      java -Xmx2g hellojpa.PurchaseBenchMain 1000000
+ */
+public class PurchaseBenchMain {
+
+    private static final int MEMBERS = 10_000;
+    private static final int PRODUCTS = 1_000;
+    private static final int DAYS = 365;
+    private static final int SEARCHES = 200;
+    private static final int WARMUP = 5;
+    private static final int PERSISTS = 20_000;
+    private static final int PER_TRANSACTION = 100;
+    private static final LocalDateTime BASE = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+    public static void main(String args[]) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("hello", properties("purchase", true));
+        insertRows(emf, rows);
+
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        long start = System.nanoTime();
+        PurchaseAggregates.rebuild(em);
+        tx.commit();
+        em.close();
+        System.out.println(String.format("rebuild : %d ms, rows : %d", (System.nanoTime() - start) / 1_000_000, rows));
+
+        Random random = new Random(7);
+        long[] memberIds = new long[SEARCHES];
+        for (int i = 0; i < SEARCHES; i++) {
+            memberIds[i] = 1 + random.nextInt(MEMBERS);
+        }
+
+        measure(emf, "member group by", memberIds, (em1, id) -> (Long) em1.createQuery("select sum(mp.count * mp.price)" +
+                " from MemberProduct mp where mp.member.id = :id")
+                .setParameter("id", id)
+                .getSingleResult());
+        measure(emf, "member summary", memberIds, (em1, id) -> PurchaseAggregates.member(em1, id).getAmount());
+        measure(emf, "all group by", new long[]{0, 0, 0}, (em1, id) -> (long) em1.createQuery("select mp.member.id, sum(mp.count * mp.price)" +
+                " from MemberProduct mp group by mp.member.id")
+                .getResultList().size());
+        measure(emf, "all summary", new long[]{0, 0, 0}, (em1, id) -> (long) PurchaseAggregates.list(em1, Dimension.MEMBER).size());
+
+        // 쓰기 비용 : 같은 데이터에 리스너만 빼고 비교한다.
+        //      spread : 트랜잭션 100건이 회원 100명, 상품 10개, 365일에 흩어짐 (집계 row 를 거의 못 합침)
+        //      hot    : 트랜잭션 100건이 회원 5명, 상품 2개, 하루에 몰림 (인기 상품)
+        long writes = PurchaseAggregates.writes();
+        long spread = persist(emf, 100, 10, DAYS);
+        long spreadWrites = PurchaseAggregates.writes() - writes;
+        long hot = persist(emf, 5, 2, 1);
+        long hotWrites = PurchaseAggregates.writes() - writes - spreadWrites;
+        emf.close();
+
+        EntityManagerFactory plain = Persistence.createEntityManagerFactory("hello", properties("purchase-plain", false));
+        insertRows(plain, rows);
+        long plainSpread = persist(plain, 100, 10, DAYS);
+        long plainHot = persist(plain, 5, 2, 1);
+        plain.close();
+
+        System.out.println(String.format("persist %d (spread) : without %d ms, with %d ms, summary writes : %d",
+                PERSISTS, plainSpread, spread, spreadWrites));
+        System.out.println(String.format("persist %d (hot)    : without %d ms, with %d ms, summary writes : %d",
+                PERSISTS, plainHot, hot, hotWrites));
+    }
+
+    private static Map<String, Object> properties(String database, boolean aggregates) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1");
+        properties.put("hibernate.show_sql", "false");
+        properties.put("hibernate.format_sql", "false");
+        properties.put("hibernate.use_sql_comments", "false");
+        if (!aggregates) {
+            properties.put("hibernate.ejb.event.post-insert", "hellojpa.TrigramIndex$Listener");
+            properties.put("hibernate.ejb.event.post-update", "hellojpa.TrigramIndex$Listener");
+            properties.put("hibernate.ejb.event.post-delete", "hellojpa.TrigramIndex$Listener");
+        }
+        return properties;
+    }
+
+    private static void insertRows(EntityManagerFactory emf, int rows) {
+        Random random = new Random(42);
+
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement member = connection.prepareStatement("insert into Member (MEMBER_ID) values (?)");
+                 PreparedStatement product = connection.prepareStatement("insert into Product (id) values (?)");
+                 PreparedStatement insert = connection.prepareStatement("insert into MemberProduct" +
+                         " (id, MEMBER_ID, PRODUCT_ID, count, price, orderDateTime) values (?, ?, ?, ?, ?, ?)")) {
+                for (int i = 1; i <= MEMBERS; i++) {
+                    member.setLong(1, i);
+                    member.addBatch();
+                }
+                member.executeBatch();
+                for (int i = 1; i <= PRODUCTS; i++) {
+                    product.setLong(1, i);
+                    product.addBatch();
+                }
+                product.executeBatch();
+
+                for (int i = 1; i <= rows; i++) {
+                    insert.setLong(1, i);
+                    insert.setLong(2, 1 + random.nextInt(MEMBERS));
+                    insert.setLong(3, 1 + random.nextInt(PRODUCTS));
+                    insert.setInt(4, 1 + random.nextInt(5));
+                    insert.setInt(5, 1000 + random.nextInt(9000));
+                    insert.setTimestamp(6, Timestamp.valueOf(BASE.plusMinutes(random.nextInt(DAYS * 24 * 60))));
+                    insert.addBatch();
+                    if (i % 1000 == 0) {
+                        insert.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+            try (PreparedStatement sequence = connection.prepareStatement("alter sequence hibernate_sequence restart with " + (rows + 1))) {
+                sequence.execute();
+            }
+        });
+        tx.commit();
+        em.close();
+    }
+
+    private static long persist(EntityManagerFactory emf, int memberCount, int productCount, int days) {
+        Random random = new Random(11);
+        EntityManager em = emf.createEntityManager();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < PERSISTS; i += PER_TRANSACTION) {
+            EntityTransaction tx = em.getTransaction();
+            tx.begin();
+            for (int j = 0; j < PER_TRANSACTION; j++) {
+                MemberProduct memberProduct = new MemberProduct();
+                memberProduct.setMember(em.getReference(Member.class, (long) (1 + random.nextInt(memberCount))));
+                memberProduct.setProduct(em.getReference(Product.class, (long) (1 + random.nextInt(productCount))));
+                memberProduct.setCount(1 + random.nextInt(5));
+                memberProduct.setPrice(1000 + random.nextInt(9000));
+                memberProduct.setOrderDateTime(BASE.plusMinutes(random.nextInt(days * 24 * 60)));
+                em.persist(memberProduct);
+            }
+            tx.commit();
+            em.clear();
+        }
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        em.close();
+        return elapsed;
+    }
+
+    private static void measure(EntityManagerFactory emf, String name, long[] ids, Search search) {
+        EntityManager em = emf.createEntityManager();
+        Function<Long, Long> apply = id -> {
+            Long result = search.apply(em, id);
+            em.clear();
+            return result;
+        };
+        for (int i = 0; i < WARMUP; i++) {
+            for (long id : ids) {
+                apply.apply(id);
+            }
+        }
+
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (long id : ids) {
+            Long result = apply.apply(id);
+            checksum += result == null ? 0 : result;
+        }
+        long elapsed = (System.nanoTime() - start) / ids.length;
+        em.close();
+
+        System.out.println(String.format("%-16s searches : %d, checksum : %d, avg : %.3f ms",
+                name, ids.length, checksum, elapsed / 1_000_000.0));
+    }
+
+    private interface Search {
+        Long apply(EntityManager em, long id);
+    }
+}
@@ -0,0 +1,112 @@
+package hellojpa;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ *  create table PURCHASE_SUMMARY (
+ *         DIMENSION varchar(10) not null,
+ *         DIMENSION_KEY varchar(30) not null,
+ *         AMOUNT bigint not null,
+ *         ORDER_COUNT bigint not null,
+ *         UNITS bigint not null,
+ *         primary key (DIMENSION, DIMENSION_KEY)
+ *     )
+ *
+ *  MemberProduct 집계 (PurchaseAggregates)
+ *      - MEMBER / 회원 식별자 : 회원별 누적 구매
+ *      - PRODUCT / 상품 식별자 : 상품별 누적 판매
+ *      - DAY / 주문일(2020-01-31) : 일별 판매
+ *
+ *  PurchaseAggregates 가 JDBC로 직접 더하고 뺀다. 테이블 생성과 조회에만 엔티티를 사용한다.
+ */
+@Entity
+@Table(name = "PURCHASE_SUMMARY")
+@IdClass(PurchaseSummary.Key.class)
+public class PurchaseSummary {
+
+    public enum Dimension {
+        MEMBER, PRODUCT, DAY
+    }
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "DIMENSION", length = 10)
+    private Dimension dimension;
+
+    @Id
+    @Column(name = "DIMENSION_KEY", length = 30)
+    private String dimensionKey;
+
+    // MemberProduct row 수
+    @Column(name = "ORDER_COUNT", nullable = false)
+    private long orderCount;
+
+    // sum(count)
+    @Column(name = "UNITS", nullable = false)
+    private long units;
+
+    // sum(count * price)
+    @Column(name = "AMOUNT", nullable = false)
+    private long amount;
+
+    public PurchaseSummary() {
+    }
+
+    PurchaseSummary(Dimension dimension, String dimensionKey) {
+        this.dimension = dimension;
+        this.dimensionKey = dimensionKey;
+    }
+
+    public Dimension getDimension() {
+        return dimension;
+    }
+
+    public String getDimensionKey() {
+        return dimensionKey;
+    }
+
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    public long getUnits() {
+        return units;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    @Override
+    public String toString() {
+        return dimension + " " + dimensionKey + " : orders " + orderCount + ", units " + units + ", amount " + amount;
+    }
+
+    public static class Key implements Serializable {
+
+        private Dimension dimension;
+        private String dimensionKey;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return dimension == key.dimension &&
+                    Objects.equals(dimensionKey, key.dimensionKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(dimension, dimensionKey);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package hellojpa;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  getResultList() vs StreamingQuery
+ *      - 메모리 H2에 Member를 rows 건 넣고 전체를 한 번씩 읽는다.
+ *      - 최대 힙 사용량과 초당 처리 row 수를 비교한다.
+ *
+ *  실행
+ *      java -Xmx4g hellojpa.StreamingBenchMain 1000000
+ */
+public class StreamingBenchMain {
+
+    public static void main(String args[]) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1;LAZY_QUERY_EXECUTION=1");
+        properties.put("hibernate.show_sql", "false");
+        properties.put("hibernate.format_sql", "false");
+        properties.put("hibernate.use_sql_comments", "false");
+
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("hello", properties);
+        insertMembers(emf, rows);
+
+        String jpql = "select m from Member m where m.name like '%kim%'";
+
+        // 스트리밍을 먼저 실행해서 앞 실행에서 남은 힙의 영향을 줄인다.
+        measure("StreamingQuery", () -> {
+            EntityManager em = emf.createEntityManager();
+            long[] length = {0};
+            long count = new StreamingQuery<>(em, jpql, Member.class)
+                    .setFetchSize(1000)
+                    .setDetachInterval(1000)
+                    .forEach(m -> length[0] += m.getName().length());
+            em.close();
+            return (int) count;
+        });
+
+        measure("getResultList", () -> {
+            EntityManager em = emf.createEntityManager();
+            long length = 0;
+            List<Member> members = em.createQuery(jpql, Member.class).getResultList();
+            for (Member m : members) {
+                length += m.getName().length();
+            }
+            em.close();
+            return members.size();
+        });
+
+        emf.close();
+    }
+
+    private static void insertMembers(EntityManagerFactory emf, int rows) {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        em.createNativeQuery("insert into Member (MEMBER_ID, USERNAME, city, street, zipcode) " +
+                "select X, 'kim' || X, 'city', 'street', '10000' from system_range(1, ?)")
+                .setParameter(1, rows)
+                .executeUpdate();
+        tx.commit();
+        em.close();
+    }
+
+    private static void measure(String name, Run run) {
+        System.gc();
+        for (MemoryPoolMXBean pool : heapPools()) {
+            pool.resetPeakUsage();
+        }
+
+        long start = System.nanoTime();
+        int count = run.run();
+        long elapsed = System.nanoTime() - start;
+
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heapPools()) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+
+        System.out.println(String.format("%-15s rows : %d, time : %d ms, rows/s : %d, peak heap : %d MB",
+                name, count, elapsed / 1_000_000, count * 1_000_000_000L / elapsed, peak / 1024 / 1024));
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+
+    private interface Run {
+        int run();
+    }
+}
@@ -0,0 +1,95 @@
+package hellojpa;
+
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+
+import javax.persistence.EntityManager;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ *  대용량 조회
+ *      - getResultList()는 모든 row를 List와 영속성 컨텍스트에 올린다.
+ *        : 100만 건이면 엔티티 100만 개 + 스냅샷 100만 개가 힙에 남는다.
+ *      - ScrollMode.FORWARD_ONLY 로 한 row씩 읽고
+ *        detachInterval 마다 영속성 컨텍스트를 비운다. (session.clear())
+ *        : 결과 엔티티만 evict 하면 같이 올라온 연관 엔티티, 컬렉션(즉시 로딩, 지연 로딩)이 남는다.
+ *      - fetchSize 만큼만 JDBC 드라이버가 한 번에 가져온다.
+ *      - 읽기 전용(setReadOnly)으로 조회해서 스냅샷을 만들지 않는다.
+ *
+ *  주의점
+ *      - H2는 LAZY_QUERY_EXECUTION=1 옵션을 줘야 결과를 나눠서 가져온다.
+ *      - action 안에서 변경한 내용은 반영되지 않는다. (읽기 전용)
+ *      - 호출 전에 영속 상태였던 엔티티도 준영속이 된다.
+ *        flush 하지 않은 변경이 있으면 사라지므로 예외를 던진다. (먼저 flush 한다.)
+ *      - 컬렉션 fetch join 은 쓰지 않는다. (한 엔티티의 row 가 나뉘어 clear 될 수 있다.)
+ */
+public class StreamingQuery<T> {
+
+    private final EntityManager em;
+    private final String jpql;
+    private final Class<T> resultClass;
+
+    private int fetchSize = 1000;
+    private int detachInterval = 1000;
+    private final Map<String, Object> parameters = new LinkedHashMap<>();
+
+    public StreamingQuery(EntityManager em, String jpql, Class<T> resultClass) {
+        this.em = em;
+        this.jpql = jpql;
+        this.resultClass = resultClass;
+    }
+
+    public StreamingQuery<T> setParameter(String name, Object value) {
+        parameters.put(name, value);
+        return this;
+    }
+
+    public StreamingQuery<T> setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    public StreamingQuery<T> setDetachInterval(int detachInterval) {
+        this.detachInterval = detachInterval;
+        return this;
+    }
+
+    /**
+     *  @return 처리한 row 수
+     */
+    public long forEach(Consumer<T> action) {
+        Session session = em.unwrap(Session.class);
+        if (session.isDirty()) {
+            throw new IllegalStateException("flush 하지 않은 변경이 있습니다. clear 하면 사라지므로 먼저 flush 하세요.");
+        }
+
+        Query<T> query = session.createQuery(jpql, resultClass)
+                .setFetchSize(fetchSize)
+                .setReadOnly(true)
+                .setCacheMode(CacheMode.IGNORE);
+        for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+            query.setParameter(parameter.getKey(), parameter.getValue());
+        }
+
+        long count = 0;
+        try (ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                T row = resultClass.cast(results.get(0));
+                action.accept(row);
+                count++;
+
+                // 결과 엔티티와 같이 올라온 연관 엔티티, 컬렉션까지 비운다.
+                if (count % detachInterval == 0) {
+                    session.clear();
+                }
+            }
+        }
+        session.clear();
+        return count;
+    }
+}
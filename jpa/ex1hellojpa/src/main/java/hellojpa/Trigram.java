@@ -0,0 +1,79 @@
+package hellojpa;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ *  create table TRIGRAM_INDEX (
+ *         ATTRIBUTE varchar(100) not null,
+ *         GRAM varchar(3) not null,
+ *         ENTITY_ID bigint not null,
+ *         primary key (ATTRIBUTE, ENTITY_ID, GRAM)
+ *     )
+ *  create index IDX_TRIGRAM_GRAM on TRIGRAM_INDEX (GRAM, ATTRIBUTE, ENTITY_ID)
+ *
+ *      - @IdClass 의 PK 컬럼은 필드 이름순으로 만들어진다. (ENTITY_ID가 GRAM보다 앞)
+ *        PK는 엔티티 하나의 trigram을 지울 때, 인덱스는 gram으로 후보를 찾을 때 사용한다.
+ *      - H2 는 인덱스 첫 번째 컬럼에만 in (...) 조회를 쓰기 때문에 GRAM을 맨 앞에 둔다.
+ *
+ *  TrigramIndex 가 JDBC로 직접 넣고 지운다. 테이블 생성과 조회에만 엔티티를 사용한다.
+ */
+@Entity
+@Table(name = "TRIGRAM_INDEX",
+        indexes = @Index(name = "IDX_TRIGRAM_GRAM", columnList = "GRAM, ATTRIBUTE, ENTITY_ID"))
+@IdClass(Trigram.Key.class)
+public class Trigram {
+
+    // hellojpa.Member.name
+    @Id
+    @Column(name = "ATTRIBUTE", length = 100)
+    private String attribute;
+
+    @Id
+    @Column(name = "GRAM", length = 3)
+    private String gram;
+
+    @Id
+    @Column(name = "ENTITY_ID")
+    private Long entityId;
+
+    public String getAttribute() {
+        return attribute;
+    }
+
+    public String getGram() {
+        return gram;
+    }
+
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    public static class Key implements Serializable {
+
+        private String attribute;
+        private String gram;
+        private Long entityId;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return Objects.equals(attribute, key.attribute) &&
+                    Objects.equals(gram, key.gram) &&
+                    Objects.equals(entityId, key.entityId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(attribute, gram, entityId);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package hellojpa;
+
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BiFunction;
+
+/**
+ *  like '%검색어%' vs TrigramIndex.contains
+ *      - 영문 소문자 10글자 이름의 Member 를 rows 건 넣고 rebuild() 로 인덱스를 만든다.
+ *      - 실제 이름에서 잘라낸 5글자로 검색한다. (검색어마다 워밍업 후 평균)
+ *      - 쓰기 비용 : Member 를 persist / 이름 변경 (트랜잭션마다 100건)
+ *
+ *  실행
+ *      java -Xmx2g hellojpa.TrigramBenchMain 1000000
+ */
+public class TrigramBenchMain {
+
+    private static final int SEARCHES = 20;
+    private static final int WARMUP = 3;
+    private static final int WRITES = 20_000;
+    private static final int PER_TRANSACTION = 100;
+
+    public static void main(String args[]) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        Map<String, Object> properties = new HashMap<>();
+        // 트라이그램 row 가 이름 수의 8배라서 메모리 DB 는 힙을 넘는다.
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:./target/trigram-bench");
+        properties.put("hibernate.show_sql", "false");
+        properties.put("hibernate.format_sql", "false");
+        properties.put("hibernate.use_sql_comments", "false");
+
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("hello", properties);
+        List<String> terms = insertMembers(emf, rows);
+
+        long start = System.nanoTime();
+        TrigramIndex.rebuild(emf, Member.class, "name");
+        System.out.println(String.format("rebuild : %d ms, rows : %d", (System.nanoTime() - start) / 1_000_000, rows));
+
+        measure(emf, "like", terms, (searchEm, term) -> searchEm.createQuery("select m from Member m where m.name like :pattern", Member.class)
+                .setParameter("pattern", "%" + term + "%")
+                .getResultList());
+        measure(emf, "TrigramIndex", terms, (searchEm, term) -> TrigramIndex.contains(searchEm, Member.class, "name", term));
+
+        write(emf, rows);
+        emf.close();
+    }
+
+    private static void write(EntityManagerFactory emf, int rows) {
+        Random random = new Random(7);
+        EntityManager em = emf.createEntityManager();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < WRITES; i += PER_TRANSACTION) {
+            EntityTransaction tx = em.getTransaction();
+            tx.begin();
+            for (int j = 0; j < PER_TRANSACTION; j++) {
+                Member member = new Member();
+                member.setName(name(random));
+                em.persist(member);
+            }
+            tx.commit();
+            em.clear();
+        }
+        long persist = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        for (int i = 0; i < WRITES; i += PER_TRANSACTION) {
+            EntityTransaction tx = em.getTransaction();
+            tx.begin();
+            for (int j = 0; j < PER_TRANSACTION; j++) {
+                em.find(Member.class, (long) (1 + random.nextInt(rows))).setName(name(random));
+            }
+            tx.commit();
+            em.clear();
+        }
+        long update = (System.nanoTime() - start) / 1_000_000;
+        em.close();
+
+        System.out.println(String.format("persist %d : %d ms, update %d : %d ms", WRITES, persist, WRITES, update));
+    }
+
+    private static String name(Random random) {
+        char[] name = new char[10];
+        for (int j = 0; j < name.length; j++) {
+            name[j] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(name);
+    }
+
+    private static List<String> insertMembers(EntityManagerFactory emf, int rows) {
+        Random random = new Random(42);
+        List<String> terms = new ArrayList<>();
+
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement insert = connection.prepareStatement("insert into Member (MEMBER_ID, USERNAME) values (?, ?)")) {
+                for (int i = 1; i <= rows; i++) {
+                    String name = name(random);
+                    if (i % (rows / SEARCHES) == 0) {
+                        terms.add(name.substring(2, 7));
+                    }
+
+                    insert.setLong(1, i);
+                    insert.setString(2, name);
+                    insert.addBatch();
+                    if (i % 1000 == 0) {
+                        insert.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+            try (PreparedStatement sequence = connection.prepareStatement("alter sequence hibernate_sequence restart with " + (rows + 1))) {
+                sequence.execute();
+            }
+        });
+        tx.commit();
+        em.close();
+        return terms;
+    }
+
+    private static void measure(EntityManagerFactory emf, String name, List<String> terms,
+                                BiFunction<EntityManager, String, List<Member>> search) {
+        EntityManager em = emf.createEntityManager();
+        for (int i = 0; i < WARMUP; i++) {
+            for (String term : terms) {
+                search.apply(em, term);
+                em.clear();
+            }
+        }
+
+        long rows = 0;
+        long start = System.nanoTime();
+        for (String term : terms) {
+            rows += search.apply(em, term).size();
+            em.clear();
+        }
+        long elapsed = (System.nanoTime() - start) / terms.size();
+        em.close();
+
+        System.out.println(String.format("%-15s searches : %d, rows : %d, avg : %.1f ms",
+                name, terms.size(), rows, elapsed / 1_000_000.0));
+    }
+}
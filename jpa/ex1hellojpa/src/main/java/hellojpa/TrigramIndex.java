@@ -0,0 +1,393 @@
+package hellojpa;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.FlushModeType;
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ *  부분 문자열 검색 (트라이그램 인덱스)
+ *      - where m.name like '%kim%' 은 앞에 %가 있어서 인덱스를 타지 못하고 전체를 읽는다.
+ *      - @TrigramIndexed 속성 값을 3글자씩 잘라서(kim -> kim, imj, ...) TRIGRAM_INDEX 에 넣어둔다.
+ *          : insert / update / delete 이벤트에서 바뀐 값을 세션별로 모아둔다. (Listener)
+ *          : 커밋 직전(flush 후)에 같은 트랜잭션으로 delete 배치 한 번, insert 배치 한 번에 보낸다.
+ *            (hibernate.jdbc.batch_size 마다 executeBatch)
+ *          : 같은 트랜잭션에서 contains() 를 호출하면 flush 하고 모아둔 값을 먼저 보낸다.
+ *      - 1. TRIGRAM_INDEX 에서 검색어의 트라이그램을 모두 가진 식별자를 고른다. (IDX_TRIGRAM_GRAM)
+ *      - 2. 그 식별자의 엔티티만 IN 절로 읽으면서 like 로 한 번 더 확인한다.
+ *
+ *          List<Member> members = TrigramIndex.contains(em, Member.class, "name", "kim");
+ *
+ *  설정 (persistence.xml)
+ *      - hibernate.ejb.event.post-insert = hellojpa.TrigramIndex$Listener (post-update, post-delete 도 같이)
+ *      - 이미 있는 데이터는 rebuild() 로 한 번 채운다.
+ *
+ *  rebuild
+ *      - 식별자 순서로 REBUILD_CHUNK 건씩 읽어서 구간마다 지우고 넣고 커밋한다. (undo log, 락이 쌓이지 않는다.)
+ *      - IDX_TRIGRAM_GRAM 은 그대로 둔다. (다른 속성의 contains() 는 계속 인덱스로 조회한다.)
+ *          : 구간마다 지우기와 넣기를 한 트랜잭션으로 커밋해서 다른 트랜잭션은 이전 값이나 새 값 중 하나를 본다.
+ *
+ *  주의점
+ *      - 식별자가 정수 타입(Long, Integer ...)인 엔티티에만 사용할 수 있다. (ENTITY_ID bigint)
+ *      - 검색어가 3글자보다 짧으면 like 로 전체를 읽는다.
+ *      - 대소문자를 구분한다. (like 와 같다)
+ *      - 벌크 연산, 네이티브 쿼리로 바꾼 값은 반영되지 않는다. (rebuild)
+ */
+public class TrigramIndex {
+
+    private static final int GRAM = 3;
+    private static final int BATCH_SIZE = 1000;
+    private static final int REBUILD_CHUNK = 10_000;
+
+    // IN 절에 들어가는 식별자 개수 제한
+    private static final int IN_LIMIT = 1000;
+
+    private static final String INSERT = "insert into TRIGRAM_INDEX (ATTRIBUTE, GRAM, ENTITY_ID) values (?, ?, ?)";
+    private static final String DELETE = "delete from TRIGRAM_INDEX where ATTRIBUTE = ? and ENTITY_ID = ?";
+
+    // 엔티티 이름 -> @TrigramIndexed 속성 이름
+    private static final Map<String, List<String>> INDEXED = new ConcurrentHashMap<>();
+
+    // 세션(트랜잭션)별로 모아둔 변경
+    private static final BeforeCompletionBuffer<Changes> PENDING = new BeforeCompletionBuffer<>(Changes::new,
+            Changes::write, "트라이그램 인덱스를 반영하지 못했습니다.");
+
+    public static Set<String> trigrams(String value) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        if (value != null) {
+            for (int i = 0; i + GRAM <= value.length(); i++) {
+                trigrams.add(value.substring(i, i + GRAM));
+            }
+        }
+        return trigrams;
+    }
+
+    public static <T> List<T> contains(EntityManager em, Class<T> entityClass, String attribute, String text) {
+        String entityName = persister(em, entityClass).getEntityName();
+        SharedSessionContractImplementor session = em.unwrap(SharedSessionContractImplementor.class);
+        // flush 전의 변경도 이벤트로 모은다. (TRIGRAM_INDEX 조회의 자동 flush 는 엔티티 테이블 변경을 보내지 않는다.)
+        if (session.isTransactionInProgress() && em.getFlushMode() == FlushModeType.AUTO) {
+            em.flush();
+        }
+        PENDING.write(session);
+        String pattern = "%" + text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+
+        Set<String> trigrams = trigrams(text);
+        if (trigrams.isEmpty()) {
+            return em.createQuery("select e from " + entityName + " e" +
+                    " where e." + attribute + " like :pattern escape '\\'", entityClass)
+                    .setParameter("pattern", pattern)
+                    .getResultList();
+        }
+
+        List<Long> ids = em.createQuery("select t.entityId from Trigram t" +
+                " where t.attribute = :attribute and t.gram in :trigrams" +
+                " group by t.entityId" +
+                " having count(t.gram) = :trigramCount", Long.class)
+                .setParameter("attribute", entityName + "." + attribute)
+                .setParameter("trigrams", trigrams)
+                .setParameter("trigramCount", (long) trigrams.size())
+                .getResultList();
+
+        // 트라이그램이 모두 있어도 순서가 다를 수 있으므로(kimi -> kim, imi / imikim) like 로 다시 확인한다.
+        List<T> result = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += IN_LIMIT) {
+            result.addAll(em.createQuery("select e from " + entityName + " e" +
+                    " where e.id in :ids and e." + attribute + " like :pattern escape '\\'", entityClass)
+                    .setParameter("ids", padded(ids.subList(from, Math.min(from + IN_LIMIT, ids.size()))))
+                    .setParameter("pattern", pattern)
+                    .getResultList());
+        }
+        return result;
+    }
+
+    /**
+     *  IN 절 개수를 2의 거듭제곱으로 맞춘다. (마지막 식별자 반복)
+     *      - 결과 건수마다 다른 SQL이 만들어져서 쿼리 플랜 캐시가 늘어나는 것을 막는다.
+     */
+    private static List<Long> padded(List<Long> ids) {
+        int size = Integer.highestOneBit(ids.size());
+        if (size == ids.size()) {
+            return ids;
+        }
+
+        List<Long> padded = new ArrayList<>(ids);
+        while (padded.size() < size << 1) {
+            padded.add(ids.get(ids.size() - 1));
+        }
+        return padded;
+    }
+
+    /**
+     *  이미 있는 데이터로 인덱스를 다시 만든다.
+     *      - REBUILD_CHUNK 건마다 커밋한다. (트랜잭션 밖에서 호출)
+     */
+    public static void rebuild(EntityManagerFactory emf, Class<?> entityClass, String attribute) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            AbstractEntityPersister persister = persister(em, entityClass);
+            requireNumericId(persister);
+            String key = persister.getEntityName() + "." + attribute;
+            String idColumn = persister.getIdentifierColumnNames()[0];
+            String select = "select " + idColumn + ", " + persister.getPropertyColumnNames(attribute)[0]
+                    + " from " + persister.getTableName() + " where " + idColumn + " > ? order by " + idColumn;
+
+            Long lastId = Long.MIN_VALUE;
+            while (lastId != null) {
+                final long from = lastId;
+                lastId = inTransaction(em, session -> session.doReturningWork(connection ->
+                        rebuildChunk(connection, select, key, from)));
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     *  lastId 다음 REBUILD_CHUNK 건의 트라이그램을 지우고 다시 넣는다.
+     *      - 남은 row 가 없으면 lastId 뒤에 남아있는 트라이그램(삭제된 엔티티)을 지우고 null
+     */
+    private static Long rebuildChunk(Connection connection, String select, String key, long lastId) throws SQLException {
+        List<Long> ids = new ArrayList<>(REBUILD_CHUNK);
+        List<String> values = new ArrayList<>(REBUILD_CHUNK);
+        try (PreparedStatement statement = connection.prepareStatement(select)) {
+            statement.setLong(1, lastId);
+            statement.setMaxRows(REBUILD_CHUNK);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                    values.add(rs.getString(2));
+                }
+            }
+        }
+
+        Long chunkTo = ids.isEmpty() ? null : ids.get(ids.size() - 1);
+        try (PreparedStatement delete = connection.prepareStatement("delete from TRIGRAM_INDEX where ATTRIBUTE = ?"
+                + " and ENTITY_ID > ?" + (chunkTo == null ? "" : " and ENTITY_ID <= ?"))) {
+            delete.setString(1, key);
+            delete.setLong(2, lastId);
+            if (chunkTo != null) {
+                delete.setLong(3, chunkTo);
+            }
+            delete.executeUpdate();
+        }
+        if (chunkTo == null) {
+            return null;
+        }
+
+        try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+            int count = 0;
+            for (int i = 0; i < ids.size(); i++) {
+                for (String trigram : trigrams(values.get(i))) {
+                    insert.setString(1, key);
+                    insert.setString(2, trigram);
+                    insert.setLong(3, ids.get(i));
+                    insert.addBatch();
+                    if (++count % BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                    }
+                }
+            }
+            insert.executeBatch();
+        }
+        return chunkTo;
+    }
+
+    private static <R> R inTransaction(EntityManager em, Function<Session, R> work) {
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            R result = work.apply(em.unwrap(Session.class));
+            tx.commit();
+            return result;
+        } catch (RuntimeException e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        }
+    }
+
+    private static AbstractEntityPersister persister(EntityManager em, Class<?> entityClass) {
+        return (AbstractEntityPersister) em.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getMetamodel().entityPersister(entityClass);
+    }
+
+    private static List<String> indexedAttributes(EntityPersister persister) {
+        return INDEXED.computeIfAbsent(persister.getEntityName(), entityName -> {
+            List<String> attributes = new ArrayList<>();
+            for (Class<?> type = persister.getMappedClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+                for (Field field : type.getDeclaredFields()) {
+                    if (field.isAnnotationPresent(TrigramIndexed.class)) {
+                        attributes.add(field.getName());
+                    }
+                }
+            }
+            if (!attributes.isEmpty()) {
+                requireNumericId(persister);
+            }
+            return attributes;
+        });
+    }
+
+    private static void requireNumericId(EntityPersister persister) {
+        Class<?> idType = persister.getIdentifierType().getReturnedClass();
+        if (idType != Long.class && idType != Integer.class && idType != Short.class) {
+            throw new HibernateException("@TrigramIndexed 는 정수 식별자 엔티티에만 사용할 수 있습니다. "
+                    + persister.getEntityName() + " 식별자 타입 : " + idType.getName());
+        }
+    }
+
+    private static void collect(EventSource session, EntityPersister persister, Object id,
+                                Object[] oldState, Object[] state) {
+        List<String> attributes = indexedAttributes(persister);
+        if (attributes.isEmpty()) {
+            return;
+        }
+
+        // 커밋하면 반영하고, 롤백하면 버린다.
+        Changes changes = PENDING.get(session);
+
+        for (String attribute : attributes) {
+            int index = persister.getEntityMetamodel().getPropertyIndex(attribute);
+            Object oldValue = oldState == null ? null : oldState[index];
+            Object value = state == null ? null : state[index];
+            if (oldState != null && state != null && Objects.equals(oldValue, value)) {
+                continue;
+            }
+            changes.add(persister.getEntityName() + "." + attribute, ((Number) id).longValue(),
+                    oldState != null || state == null, (String) value);
+        }
+    }
+
+    /**
+     *  (속성, 식별자) -> 마지막 값
+     *      - 한 트랜잭션에서 여러 번 바뀌어도 지우기 한 번, 마지막 값 넣기 한 번만 보낸다.
+     */
+    private static class Changes {
+
+        private final Map<String, Map<Long, Change>> rows = new LinkedHashMap<>();
+
+        void add(String key, long id, boolean delete, String value) {
+            Change change = rows.computeIfAbsent(key, k -> new LinkedHashMap<>()).get(id);
+            if (change == null) {
+                rows.get(key).put(id, new Change(delete, value));
+            } else {
+                // 아직 보내지 않은 insert 뒤의 update 는 지울 row 가 없다. (처음 변경의 delete 를 유지)
+                change.value = value;
+            }
+        }
+
+        void write(SharedSessionContractImplementor session, Connection connection) throws SQLException {
+            if (rows.isEmpty()) {
+                return;
+            }
+
+            Integer sessionBatchSize = session.getJdbcBatchSize();
+            int batchSize = Math.max(1, sessionBatchSize != null ? sessionBatchSize
+                    : session.getFactory().getSessionFactoryOptions().getJdbcBatchSize());
+            try (PreparedStatement delete = connection.prepareStatement(DELETE);
+                 PreparedStatement insert = connection.prepareStatement(INSERT)) {
+                // PK (ATTRIBUTE, ENTITY_ID, GRAM) 가 겹치지 않도록 지우기를 먼저 모두 보낸다.
+                int count = 0;
+                for (Map.Entry<String, Map<Long, Change>> key : rows.entrySet()) {
+                    for (Map.Entry<Long, Change> row : key.getValue().entrySet()) {
+                        if (row.getValue().delete) {
+                            delete.setString(1, key.getKey());
+                            delete.setLong(2, row.getKey());
+                            delete.addBatch();
+                            if (++count % batchSize == 0) {
+                                delete.executeBatch();
+                            }
+                        }
+                    }
+                }
+                if (count % batchSize != 0) {
+                    delete.executeBatch();
+                }
+
+                count = 0;
+                for (Map.Entry<String, Map<Long, Change>> key : rows.entrySet()) {
+                    for (Map.Entry<Long, Change> row : key.getValue().entrySet()) {
+                        for (String trigram : trigrams(row.getValue().value)) {
+                            insert.setString(1, key.getKey());
+                            insert.setString(2, trigram);
+                            insert.setLong(3, row.getKey());
+                            insert.addBatch();
+                            if (++count % batchSize == 0) {
+                                insert.executeBatch();
+                            }
+                        }
+                    }
+                }
+                if (count % batchSize != 0) {
+                    insert.executeBatch();
+                }
+            }
+        }
+    }
+
+    private static class Change {
+
+        private final boolean delete;
+        private String value;
+
+        Change(boolean delete, String value) {
+            this.delete = delete;
+            this.value = value;
+        }
+    }
+
+    /**
+     *  엔티티 insert / update / delete 후에 바뀐 값을 모아둔다. (커밋 직전에 같은 트랜잭션으로 반영)
+     */
+    public static class Listener extends EntityChangeListener implements AggregateCascade.DeleteListenerScope {
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            collect(event.getSession(), event.getPersister(), event.getId(), null, event.getState());
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            // 준영속 엔티티를 update 하면 이전 값을 모른다. -> 지우고 다시 넣는다.
+            Object[] oldState = event.getOldState() == null ? new Object[event.getState().length] : event.getOldState();
+            collect(event.getSession(), event.getPersister(), event.getId(), oldState, event.getState());
+        }
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            collect(event.getSession(), event.getPersister(), event.getId(), event.getDeletedState(), null);
+        }
+
+        @Override
+        public boolean handlesDeleteOf(EntityPersister persister) {
+            return !indexedAttributes(persister).isEmpty();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package hellojpa;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ *  부분 문자열 검색용 트라이그램 인덱스를 만들 String 속성 (TrigramIndex)
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface TrigramIndexed {
+}
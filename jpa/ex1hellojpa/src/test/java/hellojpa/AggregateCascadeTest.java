@@ -0,0 +1,183 @@
+package hellojpa;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.event.spi.PreDeleteEvent;
+import org.hibernate.event.spi.PreDeleteEventListener;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import javax.persistence.PreRemove;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AggregateCascadeTest {
+
+    private static EntityManagerFactory emf;
+
+    @BeforeAll
+    static void setUp() {
+        // persistence.xml 의 TrigramIndex, PurchaseAggregates 리스너는 Child 삭제를 다루지 않는다.
+        emf = createEntityManagerFactory("aggregate", new HashMap<>());
+    }
+
+    @AfterAll
+    static void tearDown() {
+        emf.close();
+    }
+
+    @Test
+    void deletesChildrenAtOnceAndDetachesTheLoadedOnes() {
+        Long parentId = parentWithChildren(emf, 5);
+        Long otherId = parentWithChildren(emf, 2);
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        // 컬렉션 밖에서 읽은 자식
+        Child loose = firstChild(em, parentId);
+        Child other = firstChild(em, otherId);
+        Parent parent = em.find(Parent.class, parentId);
+
+        statistics.clear();
+        assertTrue(new AggregateCascade(em).remove(parent, "childList"));
+        assertFalse(em.contains(loose));
+        assertTrue(em.contains(other));
+        tx.commit();
+        em.close();
+
+        // 자식은 delete 한 번, 엔티티 삭제는 부모 하나
+        assertEquals(1, statistics.getEntityDeleteCount());
+        assertEquals(0, childCount(emf, parentId));
+        assertEquals(2, childCount(emf, otherId));
+        assertNull(find(emf, parentId));
+    }
+
+    @Test
+    void deleteListenerFallsBackToRemove() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("hibernate.ejb.event.pre-delete", DeleteCounter.class.getName());
+        EntityManagerFactory listenerEmf = createEntityManagerFactory("aggregate-listener", properties);
+        try {
+            Long parentId = parentWithChildren(listenerEmf, 3);
+            DeleteCounter.DELETED.set(0);
+
+            assertFalse(remove(listenerEmf, parentId));
+            assertEquals(4, DeleteCounter.DELETED.get());
+            assertEquals(0, childCount(listenerEmf, parentId));
+        } finally {
+            listenerEmf.close();
+        }
+    }
+
+    @Test
+    void defaultEntityListenerFallsBackToRemove() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("hibernate.ejb.xml_files", Collections.singletonList("hellojpa/default-listeners.xml"));
+        EntityManagerFactory ormXmlEmf = createEntityManagerFactory("aggregate-orm-xml", properties);
+        try {
+            Long parentId = parentWithChildren(ormXmlEmf, 3);
+            RemoveCounter.REMOVED.set(0);
+
+            assertFalse(remove(ormXmlEmf, parentId));
+            assertEquals(4, RemoveCounter.REMOVED.get());
+            assertEquals(0, childCount(ormXmlEmf, parentId));
+        } finally {
+            ormXmlEmf.close();
+        }
+    }
+
+    private static EntityManagerFactory createEntityManagerFactory(String database, Map<String, Object> properties) {
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1");
+        properties.put("hibernate.show_sql", "false");
+        properties.put("hibernate.generate_statistics", "true");
+        return Persistence.createEntityManagerFactory("hello", properties);
+    }
+
+    private static Long parentWithChildren(EntityManagerFactory emf, int children) {
+        Parent parent = new Parent();
+        parent.setName("parent");
+        for (int i = 0; i < children; i++) {
+            Child child = new Child();
+            child.setName("child" + i);
+            parent.addChild(child);
+        }
+
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        new AggregateCascade(em).persist(parent);
+        em.getTransaction().commit();
+        em.close();
+        return parent.getId();
+    }
+
+    private static boolean remove(EntityManagerFactory emf, Long parentId) {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        boolean atOnce = new AggregateCascade(em).remove(em.find(Parent.class, parentId), "childList");
+        em.getTransaction().commit();
+        em.close();
+        return atOnce;
+    }
+
+    private static Child firstChild(EntityManager em, Long parentId) {
+        return em.createQuery("select c from Child c where c.parent.id = :parentId order by c.id", Child.class)
+                .setParameter("parentId", parentId)
+                .setMaxResults(1)
+                .getSingleResult();
+    }
+
+    private static long childCount(EntityManagerFactory emf, Long parentId) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createQuery("select count(c) from Child c where c.parent.id = :parentId", Long.class)
+                    .setParameter("parentId", parentId)
+                    .getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static Parent find(EntityManagerFactory emf, Long parentId) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.find(Parent.class, parentId);
+        } finally {
+            em.close();
+        }
+    }
+
+    public static class DeleteCounter implements PreDeleteEventListener {
+
+        static final AtomicInteger DELETED = new AtomicInteger();
+
+        @Override
+        public boolean onPreDelete(PreDeleteEvent event) {
+            DELETED.incrementAndGet();
+            return false;
+        }
+    }
+
+    public static class RemoveCounter {
+
+        static final AtomicInteger REMOVED = new AtomicInteger();
+
+        @PreRemove
+        public void preRemove(Object entity) {
+            REMOVED.incrementAndGet();
+        }
+    }
+}
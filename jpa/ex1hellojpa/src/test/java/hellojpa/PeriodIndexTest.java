@@ -0,0 +1,146 @@
+package hellojpa;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ *  PeriodIndex(DB), IntervalTree(메모리) 결과를 전체 목록 필터(Period.overlaps)와 비교한다.
+ */
+class PeriodIndexTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2020, 1, 1, 0, 0);
+    private static final long SPAN_SECONDS = 365L * 24 * 60 * 60;
+
+    private static EntityManagerFactory emf;
+    private static List<Member> members;
+
+    @BeforeAll
+    static void setUp() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:period-index;DB_CLOSE_DELAY=-1");
+        properties.put("hibernate.show_sql", "false");
+        emf = Persistence.createEntityManagerFactory("hello", properties);
+
+        Random random = new Random(42);
+        members = new ArrayList<>();
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        for (int i = 0; i < 500; i++) {
+            Member member = new Member();
+            member.setName("member" + i);
+            member.setWorkPeriod(i % 50 == 0 ? null : randomPeriod(random));
+            em.persist(member);
+            members.add(member);
+        }
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        emf.close();
+    }
+
+    @Test
+    void intervalTreeMatchesBruteForce() {
+        Random random = new Random(7);
+        IntervalTree<Member> tree = new IntervalTree<>(members, Member::getWorkPeriod);
+        assertEquals(members.stream().filter(m -> m.getWorkPeriod() != null).count(), tree.size());
+
+        for (int i = 0; i < 2000; i++) {
+            LocalDateTime from = randomTime(random);
+            LocalDateTime to = i % 2 == 0 ? from : from.plusSeconds(random.nextInt(7 * 24 * 60 * 60));
+            assertEquals(bruteForce(from, to), ids(tree.overlapping(from, to)), from + " ~ " + to);
+        }
+    }
+
+    @Test
+    void periodIndexMatchesBruteForce() {
+        Random random = new Random(11);
+        EntityManager em = emf.createEntityManager();
+        try {
+            for (int i = 0; i < 200; i++) {
+                LocalDateTime from = randomTime(random);
+                LocalDateTime to = i % 2 == 0 ? from : from.plusSeconds(random.nextInt(7 * 24 * 60 * 60));
+                assertEquals(bruteForce(from, to),
+                        ids(PeriodIndex.overlapping(em, Member.class, "workPeriod", from, to)), from + " ~ " + to);
+                em.clear();
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    @Test
+    void boundariesAreInclusiveAndSubSecondsAreChecked() {
+        Member member = members.stream().filter(m -> m.getWorkPeriod() != null
+                && m.getWorkPeriod().getStartDate() != null && m.getWorkPeriod().getEndDate() != null)
+                .findFirst().get();
+        Period period = member.getWorkPeriod();
+        IntervalTree<Member> tree = new IntervalTree<>(members, Member::getWorkPeriod);
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            for (LocalDateTime time : new LocalDateTime[]{period.getStartDate(), period.getEndDate(),
+                    period.getStartDate().minusNanos(1000), period.getEndDate().plusNanos(1000)}) {
+                assertEquals(bruteForce(time, time), ids(tree.activeAt(time)), time.toString());
+                assertEquals(bruteForce(time, time), ids(PeriodIndex.activeAt(em, Member.class, "workPeriod", time)), time.toString());
+            }
+        } finally {
+            em.close();
+        }
+        assertThrows(IllegalArgumentException.class, () -> tree.overlapping(BASE, BASE.minusSeconds(1)));
+    }
+
+    // 끝이 없는 기간, 초 미만 값, 시작 = 끝 인 기간을 섞는다.
+    private static Period randomPeriod(Random random) {
+        LocalDateTime start = randomTime(random);
+        LocalDateTime end = start.plusSeconds(random.nextInt(30 * 24 * 60 * 60)).plusNanos(micros(random));
+        switch (random.nextInt(10)) {
+            case 0:
+                return new Period(null, end);
+            case 1:
+                return new Period(start, null);
+            case 2:
+                return new Period(start, start);
+            default:
+                return new Period(start, end);
+        }
+    }
+
+    private static LocalDateTime randomTime(Random random) {
+        return BASE.plusSeconds((long) (random.nextDouble() * SPAN_SECONDS)).withNano(micros(random));
+    }
+
+    // H2 TIMESTAMP 는 마이크로초까지 저장한다. (DB 에서 다시 읽은 값과 비교가 같도록)
+    private static int micros(Random random) {
+        return random.nextInt(1_000_000) * 1000;
+    }
+
+    private static List<Long> bruteForce(LocalDateTime from, LocalDateTime to) {
+        return members.stream()
+                .filter(m -> m.getWorkPeriod() != null && m.getWorkPeriod().overlaps(from, to))
+                .map(Member::getId)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private static List<Long> ids(List<Member> result) {
+        return result.stream().map(Member::getId).sorted().collect(Collectors.toList());
+    }
+}
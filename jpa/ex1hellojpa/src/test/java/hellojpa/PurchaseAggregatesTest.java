@@ -0,0 +1,173 @@
+package hellojpa;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PurchaseAggregatesTest {
+
+    private static EntityManagerFactory emf;
+
+    // 테스트마다 다른 주문일을 쓴다. (같은 DB를 공유한다.)
+    private static int days;
+
+    @BeforeAll
+    static void setUp() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:purchase;DB_CLOSE_DELAY=-1");
+        properties.put("hibernate.show_sql", "false");
+        emf = Persistence.createEntityManagerFactory("hello", properties);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        emf.close();
+    }
+
+    @Test
+    void oneWritePerSummaryRowPerTransaction() {
+        Member member = persist(new Member());
+        Product product = persist(new Product());
+        LocalDateTime orderDateTime = orderDateTime();
+
+        Consumer<EntityManager> orders = em -> {
+            for (int i = 0; i < 5; i++) {
+                em.persist(purchase(member, product, 2, 500, orderDateTime));
+            }
+        };
+
+        // 처음에는 회원, 상품, 주문일 row 마다 update 후 insert
+        long before = PurchaseAggregates.writes();
+        inTransaction(orders);
+        assertEquals(6, PurchaseAggregates.writes() - before);
+
+        // 이미 있는 row 는 update 한 번씩
+        before = PurchaseAggregates.writes();
+        inTransaction(orders);
+        assertEquals(3, PurchaseAggregates.writes() - before);
+        assertSummary(10, 20, 10_000, find(em -> PurchaseAggregates.member(em, member.getId())));
+        assertSummary(10, 20, 10_000, find(em -> PurchaseAggregates.product(em, product.getId())));
+        assertSummary(10, 20, 10_000, find(em -> PurchaseAggregates.day(em, orderDateTime.toLocalDate())));
+    }
+
+    @Test
+    void updateMovesTheOldValuesAndDeleteSubtracts() {
+        Member member = persist(new Member());
+        Product first = persist(new Product());
+        Product second = persist(new Product());
+        LocalDateTime orderDateTime = orderDateTime();
+        MemberProduct purchase = persist(purchase(member, first, 3, 100, orderDateTime));
+
+        inTransaction(em -> {
+            MemberProduct found = em.find(MemberProduct.class, purchase.getId());
+            found.setProduct(em.find(Product.class, second.getId()));
+            found.setCount(4);
+        });
+        assertSummary(0, 0, 0, find(em -> PurchaseAggregates.product(em, first.getId())));
+        assertSummary(1, 4, 400, find(em -> PurchaseAggregates.product(em, second.getId())));
+        assertSummary(1, 4, 400, find(em -> PurchaseAggregates.member(em, member.getId())));
+
+        inTransaction(em -> em.remove(em.find(MemberProduct.class, purchase.getId())));
+        assertSummary(0, 0, 0, find(em -> PurchaseAggregates.product(em, second.getId())));
+        assertSummary(0, 0, 0, find(em -> PurchaseAggregates.day(em, orderDateTime.toLocalDate())));
+    }
+
+    @Test
+    void rollbackWritesNothing() {
+        Member member = persist(new Member());
+        Product product = persist(new Product());
+
+        long before = PurchaseAggregates.writes();
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        em.persist(purchase(em.merge(member), em.merge(product), 1, 1000, orderDateTime()));
+        em.flush();
+        em.getTransaction().rollback();
+        em.close();
+
+        assertEquals(before, PurchaseAggregates.writes());
+        assertSummary(0, 0, 0, find(e -> PurchaseAggregates.member(e, member.getId())));
+    }
+
+    @Test
+    void rebuildFixesBulkChanges() {
+        Member member = persist(new Member());
+        Product product = persist(new Product());
+        LocalDateTime orderDateTime = orderDateTime();
+        MemberProduct purchase = persist(purchase(member, product, 1, 1000, orderDateTime));
+
+        // 벌크 연산은 집계에 반영되지 않는다.
+        inTransaction(em -> em.createQuery("update MemberProduct mp set mp.count = 5 where mp.id = :id")
+                .setParameter("id", purchase.getId())
+                .executeUpdate());
+        assertSummary(1, 1, 1000, find(em -> PurchaseAggregates.member(em, member.getId())));
+
+        inTransaction(PurchaseAggregates::rebuild);
+
+        assertSummary(1, 5, 5000, find(em -> PurchaseAggregates.member(em, member.getId())));
+        assertSummary(1, 5, 5000, find(em -> PurchaseAggregates.product(em, product.getId())));
+        assertSummary(1, 5, 5000, find(em -> PurchaseAggregates.day(em, orderDateTime.toLocalDate())));
+    }
+
+    private static synchronized LocalDateTime orderDateTime() {
+        return LocalDate.of(2000, 1, 1).plusDays(++days).atTime(10, 0);
+    }
+
+    private static MemberProduct purchase(Member member, Product product, int count, int price, LocalDateTime orderDateTime) {
+        MemberProduct purchase = new MemberProduct();
+        purchase.setMember(member);
+        purchase.setProduct(product);
+        purchase.setCount(count);
+        purchase.setPrice(price);
+        purchase.setOrderDateTime(orderDateTime);
+        return purchase;
+    }
+
+    private static <T> T persist(T entity) {
+        inTransaction(em -> em.persist(entity));
+        return entity;
+    }
+
+    private static void assertSummary(long orderCount, long units, long amount, PurchaseSummary summary) {
+        assertArrayEquals(new long[]{orderCount, units, amount},
+                new long[]{summary.getOrderCount(), summary.getUnits(), summary.getAmount()}, summary.toString());
+    }
+
+    private static PurchaseSummary find(Function<EntityManager, PurchaseSummary> query) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return query.apply(em);
+        } finally {
+            em.close();
+        }
+    }
+
+    private static void inTransaction(Consumer<EntityManager> work) {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            work.accept(em);
+            tx.commit();
+        } finally {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            em.close();
+        }
+    }
+}
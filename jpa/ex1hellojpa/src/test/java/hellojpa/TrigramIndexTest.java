@@ -0,0 +1,186 @@
+package hellojpa;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrigramIndexTest {
+
+    private static EntityManagerFactory emf;
+
+    // 테스트마다 다른 검색어를 쓴다. (같은 DB를 공유한다.)
+    private static int sequence;
+
+    @BeforeAll
+    static void setUp() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:trigram;DB_CLOSE_DELAY=-1");
+        properties.put("hibernate.show_sql", "false");
+        emf = Persistence.createEntityManagerFactory("hello", properties);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        emf.close();
+    }
+
+    @Test
+    void listenerKeepsTheIndexInSync() {
+        String kim = token() + "kim";
+        String park = token() + "park";
+        Long id = member("a-" + kim);
+        member("b-" + token());
+
+        assertEquals(names("a-" + kim), search(kim));
+
+        inTransaction(em -> em.find(Member.class, id).setName("a-" + park));
+        assertEquals(names(), search(kim));
+        assertEquals(names("a-" + park), search(park));
+
+        inTransaction(em -> em.remove(em.find(Member.class, id)));
+        assertEquals(names(), search(park));
+        assertEquals(0, trigramCount(id));
+    }
+
+    @Test
+    void searchInTheSameTransactionSeesPendingChanges() {
+        String kim = token() + "kim";
+        inTransaction(em -> {
+            Member member = new Member();
+            member.setName(kim);
+            em.persist(member);
+
+            List<Member> found = TrigramIndex.contains(em, Member.class, "name", kim);
+            assertEquals(1, found.size());
+            assertTrue(found.get(0) == member);
+        });
+        assertEquals(names(kim), search(kim));
+    }
+
+    @Test
+    void rollbackWritesNothing() {
+        Member member = new Member();
+        member.setName(token() + "kim");
+
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        em.persist(member);
+        em.flush();
+        em.getTransaction().rollback();
+        em.close();
+
+        assertEquals(0, trigramCount(member.getId()));
+    }
+
+    @Test
+    void rebuildFixesBulkChangesWithTheIndexInPlace() {
+        String kim = token() + "kim";
+        String lee = token() + "lee";
+        Long changed = member(kim);
+        Long deleted = member(lee);
+        Long kept = member(token());
+
+        inTransaction(em -> {
+            em.createNativeQuery("update Member set USERNAME = ? where MEMBER_ID = ?")
+                    .setParameter(1, lee)
+                    .setParameter(2, changed)
+                    .executeUpdate();
+            em.createNativeQuery("delete from Member where MEMBER_ID = ?")
+                    .setParameter(1, deleted)
+                    .executeUpdate();
+        });
+        // 네이티브 쿼리는 인덱스에 반영되지 않는다.
+        assertEquals(names(), search(lee));
+
+        TrigramIndex.rebuild(emf, Member.class, "name");
+
+        assertEquals(names(), search(kim));
+        assertEquals(names(lee), search(lee));
+        assertEquals(0, trigramCount(deleted));
+        assertTrue(trigramCount(kept) > 0);
+        assertEquals(1, indexCount("IDX_TRIGRAM_GRAM"));
+    }
+
+    private static synchronized String token() {
+        // 숫자를 알파벳으로 바꿔서 다른 테스트의 값과 트라이그램이 겹치지 않게 한다.
+        StringBuilder token = new StringBuilder("x");
+        for (int n = ++sequence; n > 0; n /= 26) {
+            token.append((char) ('a' + n % 26));
+        }
+        return token.append("q").toString();
+    }
+
+    private static Long member(String name) {
+        Member member = new Member();
+        member.setName(name);
+        inTransaction(em -> em.persist(member));
+        return member.getId();
+    }
+
+    private static List<String> search(String text) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return TrigramIndex.contains(em, Member.class, "name", text).stream()
+                    .map(Member::getName)
+                    .sorted()
+                    .collect(Collectors.toList());
+        } finally {
+            em.close();
+        }
+    }
+
+    private static List<String> names(String... names) {
+        return Arrays.asList(names);
+    }
+
+    private static long trigramCount(Long id) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createQuery("select count(t) from Trigram t where t.entityId = :id", Long.class)
+                    .setParameter("id", id)
+                    .getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static int indexCount(String indexName) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return ((Number) em.createNativeQuery("select count(distinct INDEX_NAME) from INFORMATION_SCHEMA.INDEXES where INDEX_NAME = ?")
+                    .setParameter(1, indexName)
+                    .getSingleResult()).intValue();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static void inTransaction(Consumer<EntityManager> work) {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            work.accept(em);
+            tx.commit();
+        } finally {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package jpabook.jpashop;
+
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  JDBC 배치 채움률
+ *      - createEntityManager() 로 연 EntityManager 의
+ *        executeBatch() 횟수와 그 밖의 statement 실행 횟수(select, 시퀀스 조회)를 센다.
+ *      - 채움률 = insert/update/delete 된 row 수 / (배치 수 * hibernate.jdbc.batch_size)
+ *          : 엔티티 타입이 섞여서 insert 되면 타입이 바뀔 때마다 배치가 끊겨서 채움률이 떨어진다.
+ *          : hibernate.order_inserts / order_updates 로 같은 타입끼리 모아서 보낸다.
+ *
+ *          BatchMetrics metrics = new BatchMetrics(emf);
+ *          EntityManager em = metrics.createEntityManager();
+ *          ...
+ *          metrics.print();    // batches 400, statements 401, rows 40000, fill ratio 100.0%
+ *
+ *  설정
+ *      - hibernate.generate_statistics = true (row 수는 팩토리 통계로 센다. 꺼져 있으면 생성할 때 예외)
+ *
+ *  주의점
+ *      - 배치 수는 이 BatchMetrics 가 연 EntityManager 만, row 수는 팩토리 전체를 센다.
+ *        측정하는 동안 다른 EntityManager 로 저장하지 않는다.
+ */
+public class BatchMetrics {
+
+    private final SessionFactory sessionFactory;
+    private final Statistics statistics;
+    private final int batchSize;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder statements = new LongAdder();
+
+    public BatchMetrics(EntityManagerFactory emf) {
+        this.sessionFactory = emf.unwrap(SessionFactory.class);
+        this.statistics = sessionFactory.getStatistics();
+        if (!statistics.isStatisticsEnabled()) {
+            throw new IllegalStateException("row 수를 세려면 hibernate.generate_statistics=true 로 만든 EntityManagerFactory 가 필요합니다.");
+        }
+
+        Object batchSize = emf.getProperties().get("hibernate.jdbc.batch_size");
+        this.batchSize = batchSize == null ? 1 : Integer.parseInt(batchSize.toString().trim());
+    }
+
+    public EntityManager createEntityManager() {
+        return sessionFactory.withOptions()
+                .eventListeners(new Listener())
+                .openSession();
+    }
+
+    public long batches() {
+        return batches.sum();
+    }
+
+    public long statements() {
+        return statements.sum();
+    }
+
+    public long rows() {
+        return statistics.getEntityInsertCount() + statistics.getEntityUpdateCount() + statistics.getEntityDeleteCount();
+    }
+
+    public double fillRatio() {
+        long batches = batches();
+        return batches == 0 ? 0 : (double) rows() / (batches * batchSize);
+    }
+
+    public void clear() {
+        batches.reset();
+        statements.reset();
+        statistics.clear();
+    }
+
+    public void print() {
+        System.out.println(String.format("batches %d, statements %d, rows %d, fill ratio %.1f%%",
+                batches(), statements(), rows(), fillRatio() * 100));
+    }
+
+    /**
+     *  createEntityManager() 로 연 세션마다 하나씩 붙는다.
+     */
+    private class Listener extends BaseSessionEventListener {
+
+        @Override
+        public void jdbcExecuteBatchStart() {
+            batches.increment();
+        }
+
+        @Override
+        public void jdbcExecuteStatementStart() {
+            statements.increment();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package jpabook.jpashop;
+
+import common.EmbeddableInterner;
+import jpabook.jpashop.domain.Order;
+import org.h2.tools.Server;
+
+import javax.management.ObjectName;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  EmbeddableInterner 를 끄고 켰을 때 주문 orders 건을 메모리에 올린 뒤 힙 히스토그램 비교
+ *      - 주문 하나에 Delivery 하나, 주소 종류는 3000 개
+ *      - H2 TCP 서버로 붙는다. (메모리 DB에 직접 붙으면 DB가 들고 있는 String 을 그대로 돌려받아서
+ *        row 마다 문자열이 새로 만들어지지 않는다. 실제 DB 처럼 네트워크로 받아야 차이가 보인다.)
+ *      - PAGE_SIZE 건씩 join fetch 로 읽고 clear 한다. (준영속 주문 목록만 남긴다.)
+ *      - GC.class_histogram (살아있는 객체) 에서 Address, String, char[], byte[] 만 출력한다.
+ *
+ *  실행
+ *      java -Xmx3g jpabook.jpashop.InternBenchMain 1000000
+ */
+public class InternBenchMain {
+
+    private static final int PAGE_SIZE = 10_000;
+    private static final int ADDRESSES = 3000;
+    private static final int TCP_PORT = 9193;
+    private static final List<String> CLASSES = Arrays.asList(
+            "jpabook.jpashop.domain.Address", "java.lang.String", "[C", "[B");
+
+    public static void main(String args[]) throws Exception {
+        int orders = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        Server server = Server.createTcpServer("-tcpPort", String.valueOf(TCP_PORT), "-ifNotExists").start();
+        long plain;
+        long interned;
+        try {
+            insertOrders(orders);
+            plain = load("plain", false);
+            interned = load("interned", true);
+        } finally {
+            server.stop();
+        }
+
+        System.out.println(String.format("retained : plain %d MB, interned %d MB, saved %d MB",
+                plain >> 20, interned >> 20, (plain - interned) >> 20));
+    }
+
+    private static EntityManagerFactory createEntityManagerFactory(String ddl, boolean interned) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:tcp://localhost:" + TCP_PORT + "/mem:intern;DB_CLOSE_DELAY=-1");
+        properties.put("hibernate.show_sql", "false");
+        properties.put("hibernate.format_sql", "false");
+        properties.put("hibernate.use_sql_comments", "false");
+        properties.put("hibernate.hbm2ddl.auto", ddl);
+        if (interned) {
+            properties.put("hibernate.ejb.event.post-load", EmbeddableInterner.class.getName());
+        }
+        return Persistence.createEntityManagerFactory("hello", properties);
+    }
+
+    private static void insertOrders(int orders) {
+        EntityManagerFactory emf = createEntityManagerFactory("create", false);
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        em.createNativeQuery("insert into Delivery (DELIVERY_ID, city, street, zipcode, status)" +
+                " select X, 'city' || mod(X, " + ADDRESSES + ") / 100, 'street ' || mod(X, " + ADDRESSES + ")," +
+                " lpad(mod(X, " + ADDRESSES + "), 5, '0'), 0 from system_range(1, " + orders + ")")
+                .executeUpdate();
+        em.createNativeQuery("insert into ORDERS (ORDER_ID, DELIVERY_ID, orderDate, status)" +
+                " select X, X, current_timestamp, 'ORDER' from system_range(1, " + orders + ")")
+                .executeUpdate();
+        tx.commit();
+        em.close();
+        emf.close();
+    }
+
+    /**
+     *  @return 주문 목록을 들고 있는 상태의 살아있는 힙 크기
+     */
+    private static long load(String name, boolean interned) throws Exception {
+        EntityManagerFactory emf = createEntityManagerFactory("none", interned);
+        EmbeddableInterner.clear();
+        long baseline = liveHeap();
+
+        List<Order> result = new ArrayList<>();
+        EntityManager em = emf.createEntityManager();
+        long start = System.nanoTime();
+        long lastId = 0;
+        List<Order> page;
+        do {
+            page = em.createQuery("select o from Order o join fetch o.delivery" +
+                    " where o.id > :lastId order by o.id", Order.class)
+                    .setParameter("lastId", lastId)
+                    .setMaxResults(PAGE_SIZE)
+                    .getResultList();
+            if (!page.isEmpty()) {
+                lastId = page.get(page.size() - 1).getId();
+            }
+            result.addAll(page);
+            em.clear();
+        } while (page.size() == PAGE_SIZE);
+        em.close();
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+        String histogram = classHistogram();
+        long retained = liveHeap() - baseline;
+        System.out.println(String.format("%-9s orders : %d, load : %d ms, retained : %d MB, intern hit %d / miss %d",
+                name, result.size(), elapsed, retained >> 20, EmbeddableInterner.hits(), EmbeddableInterner.misses()));
+        for (String line : histogram.split("\n")) {
+            String[] columns = line.trim().split("\\s+");
+            if (columns.length == 4 && CLASSES.contains(columns[3])) {
+                System.out.println(String.format("    %-32s instances %,12d  bytes %,14d", columns[3],
+                        Long.parseLong(columns[1]), Long.parseLong(columns[2])));
+            }
+        }
+
+        result.clear();
+        emf.close();
+        return retained;
+    }
+
+    private static long liveHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     *  jcmd <pid> GC.class_histogram 과 같다. (full GC 후 살아있는 객체)
+     */
+    private static String classHistogram() throws Exception {
+        return (String) ManagementFactory.getPlatformMBeanServer().invoke(
+                new ObjectName("com.sun.management:type=DiagnosticCommand"), "gcClassHistogram",
+                new Object[]{null}, new String[]{String[].class.getName()});
+    }
+}
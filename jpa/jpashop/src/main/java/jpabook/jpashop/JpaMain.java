@@ -1,6 +1,8 @@
 package jpabook.jpashop;
 
+import common.StockReservation;
 import jpabook.jpashop.domain.Book;
+import jpabook.jpashop.domain.Item;
 import jpabook.jpashop.domain.Order;
 
 import javax.persistence.EntityManager;
@@ -17,11 +19,12 @@ public class JpaMain {
 
         tx.begin();
 
+        Book book = new Book();
         try{
 
-            Book book = new Book();
             book.setName("JPA");
             book.setAuthor("김영한");
+            book.setStockQuantity(10);
 
             em.persist(book);
 
@@ -32,6 +35,11 @@ public class JpaMain {
             em.close();
         }
 
+        // 재고 예약 : 조건부 update 로 stockQuantity 를 뺀다. (변경 감지 X)
+        StockReservation stockReservation = new StockReservation(emf, Item.class, "stockQuantity");
+        StockReservation.Reservation reservation = stockReservation.reserve(book.getId(), 3);
+        stockReservation.confirm(reservation);
+
         emf.close();
     }
 }
@@ -0,0 +1,121 @@
+package jpabook.jpashop;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Book;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.Item;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  주문 대량 등록
+ *      - 주문 하나에 Delivery 1건, OrderItem 2건이 같이 저장된다. (cascade)
+ *      - hibernate.order_inserts 를 끄고 켰을 때 JDBC 배치 수와 채움률을 비교한다.
+ *      - flushSize 건마다 flush, clear 해서 영속성 컨텍스트가 커지지 않게 한다.
+ *
+ *  실행
+ *      java jpabook.jpashop.OrderImportMain 10000
+ */
+public class OrderImportMain {
+
+    private static final int FLUSH_SIZE = 500;
+
+    public static void main(String args[]) {
+        int orders = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+
+        run("order_inserts=false", "false", orders);
+        run("order_inserts=true", "true", orders);
+    }
+
+    private static void run(String name, String orderInserts, int orders) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:import_" + orderInserts + ";DB_CLOSE_DELAY=-1");
+        properties.put("hibernate.show_sql", "false");
+        properties.put("hibernate.format_sql", "false");
+        properties.put("hibernate.use_sql_comments", "false");
+        properties.put("hibernate.order_inserts", orderInserts);
+        properties.put("hibernate.order_updates", orderInserts);
+        properties.put("hibernate.generate_statistics", "true");
+
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("hello", properties);
+        BatchMetrics metrics = new BatchMetrics(emf);
+
+        EntityManager em = metrics.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        List<Long> memberIds = new ArrayList<>();
+        List<Long> itemIds = new ArrayList<>();
+
+        try{
+            tx.begin();
+            for (int i = 0; i < 100; i++) {
+                Member member = new Member();
+                member.setName("member" + i);
+                em.persist(member);
+                memberIds.add(member.getId());
+
+                Book book = new Book();
+                book.setName("book" + i);
+                book.setPrice(10000 + i);
+                book.setStockQuantity(1_000_000);
+                em.persist(book);
+                itemIds.add(book.getId());
+            }
+            tx.commit();
+            em.clear();
+
+            metrics.clear();
+            long start = System.nanoTime();
+
+            tx.begin();
+            for (int i = 0; i < orders; i++) {
+                Delivery delivery = new Delivery();
+                delivery.setAddress(new Address("city", "street", "12345"));
+                delivery.setStatus(DeliveryStatus.READY);
+
+                Order order = new Order();
+                order.setMember(em.getReference(Member.class, memberIds.get(i % memberIds.size())));
+                order.setDelivery(delivery);
+                order.setOrderDate(LocalDateTime.now());
+                order.setStatus(OrderStatus.ORDER);
+
+                for (int j = 0; j < 2; j++) {
+                    OrderItem orderItem = new OrderItem();
+                    orderItem.setItem(em.getReference(Item.class, itemIds.get((i + j) % itemIds.size())));
+                    orderItem.setOrderPrice(10000);
+                    orderItem.setCount(1);
+                    order.addOrderItem(orderItem);
+                }
+                em.persist(order);
+
+                if ((i + 1) % FLUSH_SIZE == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+            tx.commit();
+
+            System.out.print(String.format("%-20s %d ms, ", name, (System.nanoTime() - start) / 1_000_000));
+            metrics.print();
+        }catch (Exception e){
+            tx.rollback();
+            e.printStackTrace();
+        }finally{
+            em.close();
+        }
+
+        emf.close();
+    }
+}
@@ -0,0 +1,117 @@
+package jpabook.jpashop.cache;
+
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *  로컬(JVM 내부) 2차 캐시
+ *      - 엔티티, 컬렉션 영역마다 LocalStorageAccess를 하나씩 만든다.
+ *      - 개수(LRU), 시간(TTL) 제한을 영역별로 줄 수 있다.
+ *
+ *          hibernate.cache.region.factory_class = jpabook.jpashop.cache.LocalRegionFactory
+ *          hibernate.cache.local.max_entries = 10000                                  (기본값)
+ *          hibernate.cache.local.ttl_seconds = 0                                      (기본값, 0이면 만료 없음)
+ *          hibernate.cache.local.jpabook.jpashop.domain.Category.max_entries = 1000   (영역별, 영역 이름 = 엔티티 이름 / 컬렉션 role)
+ *          hibernate.cache.local.jpabook.jpashop.domain.Category.ttl_seconds = 600
+ *
+ *      - 벌크 연산(update Category c set ...)을 하면 하이버네이트가 해당 영역을 비운다.
+ *        (BulkOperationCleanupAction -> evictData())
+ *      - 타임스탬프 영역은 쿼리 캐시 정합성에 사용되기 때문에 제한을 두지 않는다.
+ *
+ *  주의점
+ *      - 여러 서버(JVM)로 띄우면 서버끼리 캐시가 맞지 않는다.
+ */
+public class LocalRegionFactory extends RegionFactoryTemplate {
+
+    public static final String PREFIX = "hibernate.cache.local.";
+    public static final String MAX_ENTRIES = "max_entries";
+    public static final String TTL_SECONDS = "ttl_seconds";
+
+    private final Map<String, LocalStorageAccess> storages = new ConcurrentHashMap<>();
+    private Map<?, ?> configValues;
+
+    @Override
+    protected void prepareForUse(SessionFactoryOptions settings, Map configValues) {
+        this.configValues = configValues;
+    }
+
+    @Override
+    protected void releaseFromUse() {
+        storages.values().forEach(LocalStorageAccess::release);
+        storages.clear();
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(DomainDataRegionConfig regionConfig,
+                                                                    DomainDataRegionBuildingContext buildingContext) {
+        return createStorage(regionConfig.getRegionName(), true);
+    }
+
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(String regionName,
+                                                                  SessionFactoryImplementor sessionFactory) {
+        return createStorage(regionName, true);
+    }
+
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(String regionName,
+                                                                SessionFactoryImplementor sessionFactory) {
+        return createStorage(regionName, false);
+    }
+
+    private LocalStorageAccess createStorage(String regionName, boolean bounded) {
+        int maxEntries = bounded ? intValue(regionName, MAX_ENTRIES, 10_000) : 0;
+        long ttlMillis = bounded ? intValue(regionName, TTL_SECONDS, 0) * 1000L : 0;
+
+        LocalStorageAccess storage = new LocalStorageAccess(regionName, maxEntries, ttlMillis);
+        storages.put(regionName, storage);
+        return storage;
+    }
+
+    private int intValue(String regionName, String name, int defaultValue) {
+        Object value = configValues.get(PREFIX + regionName + "." + name);
+        if (value == null) {
+            value = configValues.get(PREFIX + name);
+        }
+        return value == null ? defaultValue : Integer.parseInt(value.toString().trim());
+    }
+
+    public Map<String, LocalStorageAccess> getStorages() {
+        return storages;
+    }
+
+    /**
+     *  영역별 hit / miss / put (hibernate.generate_statistics=true 일 때) 와 size / eviction / expiration
+     */
+    public static void printStatistics(EntityManagerFactory emf) {
+        SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        LocalRegionFactory regionFactory = (LocalRegionFactory) sessionFactory.getCache().getRegionFactory();
+        Statistics statistics = sessionFactory.getStatistics();
+
+        for (LocalStorageAccess storage : regionFactory.getStorages().values()) {
+            StringBuilder line = new StringBuilder("cache ").append(storage.getRegionName()).append(" : ");
+            CacheRegionStatistics region = statistics.isStatisticsEnabled()
+                    ? statistics.getCacheRegionStatistics(storage.getRegionName()) : null;
+            if (region != null) {
+                line.append("hit ").append(region.getHitCount())
+                        .append(", miss ").append(region.getMissCount())
+                        .append(", put ").append(region.getPutCount()).append(", ");
+            }
+            line.append("size ").append(storage.size())
+                    .append(", eviction ").append(storage.getEvictions())
+                    .append(", expiration ").append(storage.getExpirations());
+            System.out.println(line);
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package jpabook.jpashop.domain;
 
+import common.Interned;
+
 import javax.persistence.Column;
 import javax.persistence.Embeddable;
 import java.util.Objects;
 
 @Embeddable
+@Interned
 public class Address {
 
     @Column(length = 10)
@@ -6,7 +6,8 @@ import javax.persistence.*;
 public class CategoryItem {
 
     @Id
-    @GeneratedValue
+    @SequenceGenerator(name = "CATEGORY_ITEM_SEQ_GENERATOR", sequenceName = "CATEGORY_ITEM_SEQ", allocationSize = 100)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "CATEGORY_ITEM_SEQ_GENERATOR")
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
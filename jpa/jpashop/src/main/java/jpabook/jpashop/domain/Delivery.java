@@ -1,12 +1,18 @@
 package jpabook.jpashop.domain;
 
+import lombok.Getter;
+import lombok.Setter;
+
 import javax.persistence.*;
 
 @Entity
+@Getter
+@Setter
 public class Delivery {
 
     @Id
-    @GeneratedValue
+    @SequenceGenerator(name = "DELIVERY_SEQ_GENERATOR", sequenceName = "DELIVERY_SEQ", allocationSize = 100)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "DELIVERY_SEQ_GENERATOR")
     @Column(name = "DELIVERY_ID")
     private Long id;
 
@@ -1,16 +1,27 @@
 package jpabook.jpashop.domain;
 
+import lombok.Getter;
+import lombok.Setter;
+
 import javax.persistence.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Getter
+@Setter
 @Table(name = "ORDERS")
 public class Order {
 
+    /**
+     *  시퀀스를 allocationSize(100) 만큼 미리 받아두고 메모리에서 식별자를 나눠준다. (pooled)
+     *      - persist 할 때마다 call next value 를 하지 않는다.
+     *      - hibernate.jdbc.batch_size 와 맞춰두면 식별자 조회 한 번에 insert 배치 하나가 된다.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @SequenceGenerator(name = "ORDER_SEQ_GENERATOR", sequenceName = "ORDER_SEQ", allocationSize = 100)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ORDER_SEQ_GENERATOR")
     @Column(name = "ORDER_ID")
     private Long id;
 
@@ -1,12 +1,50 @@
 package dialect;
 
 import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.function.SQLFunctionTemplate;
 import org.hibernate.dialect.function.StandardSQLFunction;
 import org.hibernate.type.StandardBasicTypes;
 
+/**
+ *  사용자 정의 함수
+ *      - JPQL에서 function('이름', ...) 또는 이름(...) 으로 사용한다.
+ *      - 집계를 DB에서 끝내고 결과만 가져오기 때문에
+ *        엔티티를 전부 메모리에 올려서 계산하지 않아도 된다.
+ *
+ *          select t.name, count(m), avg(m.age), percentile_cont(0.5, m.age),
+ *                 count_when(m.type, 'ADMIN'), listagg(m.username, ',')
+ *          from Member m join m.team t
+ *          group by t.name
+ *
+ *          select m.username, rank_over(m.team.id, m.age) from Member m
+ */
 public class MyH2Dialect extends H2Dialect {
 
     public MyH2Dialect (){
         registerFunction("group_concat", new StandardSQLFunction("group_concat", StandardBasicTypes.STRING));
+
+        // 윈도우 함수 (partition, order)
+        registerFunction("row_number_over", new SQLFunctionTemplate(StandardBasicTypes.LONG, "row_number() over (partition by ?1 order by ?2)"));
+        registerFunction("rank_over", new SQLFunctionTemplate(StandardBasicTypes.LONG, "rank() over (partition by ?1 order by ?2)"));
+        registerFunction("dense_rank_over", new SQLFunctionTemplate(StandardBasicTypes.LONG, "dense_rank() over (partition by ?1 order by ?2)"));
+        registerFunction("count_over", new SQLFunctionTemplate(StandardBasicTypes.LONG, "count(*) over (partition by ?1)"));
+        registerFunction("sum_over", new SQLFunctionTemplate(StandardBasicTypes.LONG, "sum(?1) over (partition by ?2)"));
+        registerFunction("avg_over", new SQLFunctionTemplate(StandardBasicTypes.DOUBLE, "avg(cast(?1 as double)) over (partition by ?2)"));
+
+        // 날짜 자르기 : date_trunc('month', o.orderDate)
+        registerFunction("date_trunc", new SQLFunctionTemplate(StandardBasicTypes.TIMESTAMP, "date_trunc(?1, ?2)"));
+
+        // 조건부 집계 : count_when(m.type, 'ADMIN'), sum_when(m.type, 'ADMIN', m.age)
+        registerFunction("count_when", new SQLFunctionTemplate(StandardBasicTypes.LONG, "sum(case when ?1 = ?2 then 1 else 0 end)"));
+        registerFunction("sum_when", new SQLFunctionTemplate(StandardBasicTypes.LONG, "sum(case when ?1 = ?2 then ?3 else 0 end)"));
+
+        // 백분위수 : percentile_cont(0.9, m.age)
+        registerFunction("percentile_cont", new SQLFunctionTemplate(StandardBasicTypes.DOUBLE, "percentile_cont(?1) within group (order by ?2)"));
+        registerFunction("median", new StandardSQLFunction("median", StandardBasicTypes.DOUBLE));
+
+        // 문자열, JSON 집계
+        registerFunction("listagg", new SQLFunctionTemplate(StandardBasicTypes.STRING, "listagg(?1, ?2) within group (order by ?1)"));
+        registerFunction("json_arrayagg", new SQLFunctionTemplate(StandardBasicTypes.STRING, "cast(json_arrayagg(?1) as varchar)"));
+        registerFunction("json_objectagg", new SQLFunctionTemplate(StandardBasicTypes.STRING, "cast(json_objectagg(key ?1 value ?2) as varchar)"));
     }
 }
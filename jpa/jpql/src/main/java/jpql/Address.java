@@ -1,8 +1,11 @@
 package jpql;
 
+import common.Interned;
+
 import javax.persistence.Embeddable;
 
 @Embeddable
+@Interned
 public class Address {
 
     private String city;
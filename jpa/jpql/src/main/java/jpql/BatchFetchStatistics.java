@@ -0,0 +1,68 @@
+package jpql;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CollectionStatistics;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.Statistics;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ *  연관관계별 배치 페치 통계
+ *      - hibernate.batch_fetch_style=PADDED
+ *          : 영속성 컨텍스트에 초기화되지 않은 프록시/컬렉션 수를 보고
+ *            고정된 크기 목록(1000, 500, 250, ... 10, 9, ... 1) 중 맞는 크기를 고르고
+ *            남는 자리는 같은 식별자로 채운다.
+ *          : IN 절 모양이 몇 개로 고정되기 때문에 statement 캐시가 오염되지 않는다.
+ *      - 연관관계마다 로딩한 개수(loads) / 지연 로딩 쿼리 수(fetches) 를 출력한다.
+ *          : loads 는 배치로 가져온 것만이 아니라 fetch join, 쿼리 결과로 로딩한 것도 포함한다.
+ *          : 측정 구간(clear() 이후)에서 지연 로딩만 했을 때 loads/fetch 가 한 번에 가져온 건수다.
+ *
+ *          collection jpql.Team.members : loads 3, fetches 1, loads/fetch 3.0
+ *
+ *  설정
+ *      - hibernate.generate_statistics = true (꺼져 있으면 생성할 때 예외)
+ */
+public class BatchFetchStatistics {
+
+    private final Statistics statistics;
+
+    public BatchFetchStatistics(EntityManagerFactory emf) {
+        this.statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        if (!statistics.isStatisticsEnabled()) {
+            throw new IllegalStateException("배치 페치 통계를 보려면 hibernate.generate_statistics=true 로 만든 EntityManagerFactory 가 필요합니다.");
+        }
+    }
+
+    public CollectionStatistics collection(Class<?> ownerClass, String attribute) {
+        return statistics.getCollectionStatistics(ownerClass.getName() + "." + attribute);
+    }
+
+    public EntityStatistics entity(Class<?> entityClass) {
+        return statistics.getEntityStatistics(entityClass.getName());
+    }
+
+    public void clear() {
+        statistics.clear();
+    }
+
+    public void print() {
+        for (String role : statistics.getCollectionRoleNames()) {
+            CollectionStatistics collection = statistics.getCollectionStatistics(role);
+            if (collection.getFetchCount() > 0) {
+                print("collection " + role, collection.getLoadCount(), collection.getFetchCount());
+            }
+        }
+        for (String entityName : statistics.getEntityNames()) {
+            EntityStatistics entity = statistics.getEntityStatistics(entityName);
+            if (entity.getFetchCount() > 0) {
+                print("entity " + entityName, entity.getLoadCount(), entity.getFetchCount());
+            }
+        }
+    }
+
+    private static void print(String name, long loads, long fetches) {
+        System.out.println(String.format("%s : loads %d, fetches %d, loads/fetch %.1f",
+                name, loads, fetches, (double) loads / fetches));
+    }
+}
@@ -0,0 +1,154 @@
+package jpql;
+
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.Status;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Parameter;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import javax.persistence.metamodel.EntityType;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  영속성 컨텍스트를 유지하는 벌크 연산
+ *      - em.clear()는 영속성 컨텍스트 전체를 비우기 때문에
+ *        이후에 다시 사용하는 엔티티를 모두 다시 조회해야 한다.
+ *      - 벌크 연산 전에 영속성 컨텍스트에 있는 엔티티 중
+ *        where 조건에 해당하는 엔티티만 골라서
+ *          - update : em.refresh() 로 DB의 값을 다시 읽는다.
+ *          - delete : em.detach() 로 영속성 컨텍스트에서 분리한다.
+ *      - 2차 캐시는 하이버네이트가 벌크 연산 후 해당 엔티티 영역을 비워준다.
+ *        (BulkOperationCleanupAction)
+ *
+ *  주의점
+ *      - detach는 CascadeType.DETACH(ALL) 연관관계까지 같이 분리된다.
+ */
+public class BulkExecutor {
+
+    // IN 절에 들어가는 식별자 개수 제한
+    private static final int IN_LIMIT = 1000;
+
+    private final EntityManager em;
+
+    public BulkExecutor(EntityManager em) {
+        this.em = em;
+    }
+
+    /**
+     *  update Member m set m.age = 20 where m.age < :age
+     *      -> update(Member.class, "m", "m.age = 20", "m.age < :age", params)
+     */
+    public <T> int update(Class<T> entityClass, String alias, String setClause,
+                          String whereClause, Map<String, Object> params) {
+        String entityName = entityName(entityClass);
+        String jpql = "update " + entityName + " " + alias + " set " + setClause + where(whereClause);
+
+        List<Object> matchedIds = findManagedMatches(entityClass, alias, whereClause, params);
+        int resultCount = bind(em.createQuery(jpql), params).executeUpdate();
+
+        for (Object id : matchedIds) {
+            em.refresh(em.find(entityClass, id));
+        }
+        return resultCount;
+    }
+
+    /**
+     *  delete from Member m where m.age < :age
+     *      -> delete(Member.class, "m", "m.age < :age", params)
+     */
+    public <T> int delete(Class<T> entityClass, String alias, String whereClause, Map<String, Object> params) {
+        String entityName = entityName(entityClass);
+        String jpql = "delete from " + entityName + " " + alias + where(whereClause);
+
+        List<Object> matchedIds = findManagedMatches(entityClass, alias, whereClause, params);
+        int resultCount = bind(em.createQuery(jpql), params).executeUpdate();
+
+        for (Object id : matchedIds) {
+            em.detach(em.find(entityClass, id));
+        }
+        return resultCount;
+    }
+
+    /**
+     *  영속성 컨텍스트에 있는 엔티티 중 where 조건에 해당하는 엔티티의 식별자
+     *      - 벌크 연산 전에 조회해야 변경 전 조건으로 비교할 수 있다.
+     *      - 조회 전에 flush가 되기 때문에 refresh로 변경 내용을 잃지 않는다.
+     */
+    private <T> List<Object> findManagedMatches(Class<T> entityClass, String alias,
+                                                String whereClause, Map<String, Object> params) {
+        List<Serializable> managedIds = managedIds(entityClass);
+        if (managedIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        em.flush();
+
+        String idName = idName(entityClass);
+        String jpql = "select " + alias + "." + idName + " from " + entityName(entityClass) + " " + alias
+                + " where " + alias + "." + idName + " in :managedIds"
+                + (whereClause == null ? "" : " and (" + whereClause + ")");
+
+        List<Object> matchedIds = new ArrayList<>();
+        for (int i = 0; i < managedIds.size(); i += IN_LIMIT) {
+            TypedQuery<Object> query = em.createQuery(jpql, Object.class)
+                    .setParameter("managedIds", managedIds.subList(i, Math.min(i + IN_LIMIT, managedIds.size())));
+            matchedIds.addAll(bindDeclared(query, params).getResultList());
+        }
+        return matchedIds;
+    }
+
+    private List<Serializable> managedIds(Class<?> entityClass) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+
+        List<Serializable> ids = new ArrayList<>();
+        for (Map.Entry<Object, EntityEntry> entry : session.getPersistenceContext().reentrantSafeEntityEntries()) {
+            if (entityClass.isInstance(entry.getKey()) && entry.getValue().getStatus() == Status.MANAGED) {
+                ids.add(entry.getValue().getId());
+            }
+        }
+        return ids;
+    }
+
+    private String entityName(Class<?> entityClass) {
+        return em.getMetamodel().entity(entityClass).getName();
+    }
+
+    private String idName(Class<?> entityClass) {
+        EntityType<?> entityType = em.getMetamodel().entity(entityClass);
+        return entityType.getId(entityType.getIdType().getJavaType()).getName();
+    }
+
+    private static String where(String whereClause) {
+        return whereClause == null ? "" : " where " + whereClause;
+    }
+
+    private static <Q extends Query> Q bind(Q query, Map<String, Object> params) {
+        if (params != null) {
+            for (Map.Entry<String, Object> param : params.entrySet()) {
+                query.setParameter(param.getKey(), param.getValue());
+            }
+        }
+        return query;
+    }
+
+    /**
+     *  쿼리에 있는 파라미터만 바인딩한다.
+     *      - 조회 쿼리는 where 절만 사용하므로 set 절 파라미터(m.age = :newAge)는 넘긴다.
+     */
+    private static <Q extends Query> Q bindDeclared(Q query, Map<String, Object> params) {
+        if (params != null) {
+            for (Parameter<?> parameter : query.getParameters()) {
+                if (parameter.getName() != null && params.containsKey(parameter.getName())) {
+                    query.setParameter(parameter.getName(), params.get(parameter.getName()));
+                }
+            }
+        }
+        return query;
+    }
+}
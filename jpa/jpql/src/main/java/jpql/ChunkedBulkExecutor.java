@@ -0,0 +1,244 @@
+package jpql;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Query;
+import javax.persistence.metamodel.EntityType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ *  PK 구간으로 나눠서 실행하는 벌크 연산
+ *      - update Member m set ... 한 번으로 수천만 건을 바꾸면
+ *        락을 오래 잡고 undo log가 커진다.
+ *      - 식별자(MEMBER_ID) 순서로 chunkSize 만큼 구간을 나누고
+ *        구간마다 트랜잭션을 커밋한다.
+ *          : update Member m set ... where m.id > :chunkFrom and m.id <= :chunkTo and (조건)
+ *      - threads > 1 이면 구간을 스레드 풀에서 동시에 실행한다.
+ *
+ *      new ChunkedBulkExecutor(emf, 10000, 4)
+ *              .update(Member.class, "m", "m.age = 20", null, null, 0L,
+ *                      (lastId, chunkCount, totalCount) -> System.out.println("lastId : " + lastId));
+ *
+ *  재시작
+ *      - ProgressListener로 넘어오는 lastId 까지는 모두 커밋이 끝난 구간이다.
+ *      - 중단되면 lastId를 startAfterId로 넘겨서 이어서 실행한다.
+ *      - lastId 이후에 먼저 끝난 구간이 다시 실행될 수 있기 때문에
+ *        set 절은 여러 번 실행해도 결과가 같아야 한다. (m.age = 20 O, m.age = m.age + 1 X)
+ *
+ *  주의점
+ *      - 식별자는 Long 타입이어야 한다.
+ *      - 구간마다 커밋되기 때문에 전체가 하나의 트랜잭션은 아니다.
+ */
+public class ChunkedBulkExecutor {
+
+    public interface ProgressListener {
+        void onChunk(long lastId, int chunkCount, long totalCount);
+    }
+
+    private final EntityManagerFactory emf;
+    private final int chunkSize;
+    private final int threads;
+
+    public ChunkedBulkExecutor(EntityManagerFactory emf, int chunkSize, int threads) {
+        if (chunkSize < 1 || threads < 1) {
+            throw new IllegalArgumentException("chunkSize, threads는 1 이상이어야 합니다.");
+        }
+        this.emf = emf;
+        this.chunkSize = chunkSize;
+        this.threads = threads;
+    }
+
+    public long update(Class<?> entityClass, String alias, String setClause, String whereClause,
+                       Map<String, Object> params, long startAfterId, ProgressListener listener) {
+        return execute(entityClass, alias, "update %s %s set " + setClause, whereClause, params, startAfterId, listener);
+    }
+
+    public long delete(Class<?> entityClass, String alias, String whereClause,
+                       Map<String, Object> params, long startAfterId, ProgressListener listener) {
+        return execute(entityClass, alias, "delete from %s %s", whereClause, params, startAfterId, listener);
+    }
+
+    private long execute(Class<?> entityClass, String alias, String statement, String whereClause,
+                         Map<String, Object> params, long startAfterId, ProgressListener listener) {
+        EntityType<?> entityType = emf.getMetamodel().entity(entityClass);
+        String idPath = alias + "." + entityType.getId(entityType.getIdType().getJavaType()).getName();
+
+        String boundJpql = "select " + idPath + " from " + entityType.getName() + " " + alias
+                + " where " + idPath + " > :lastId order by " + idPath;
+        String maxJpql = "select max(" + idPath + ") from " + entityType.getName() + " " + alias
+                + " where " + idPath + " > :lastId";
+        String chunkJpql = String.format(statement, entityType.getName(), alias)
+                + " where " + idPath + " > :chunkFrom and " + idPath + " <= :chunkTo"
+                + (whereClause == null ? "" : " and (" + whereClause + ")");
+
+        Progress progress = new Progress(startAfterId, listener);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Semaphore inFlight = new Semaphore(threads * 2);
+        List<Future<?>> futures = new ArrayList<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            long chunkFrom = startAfterId;
+            // 구간 하나라도 실패하면 다음 구간을 나누지도, 제출하지도 않는다.
+            while (failure.get() == null) {
+                Long chunkTo = nextBound(em, boundJpql, maxJpql, chunkFrom);
+                if (chunkTo == null) {
+                    break;
+                }
+
+                inFlight.acquire();
+                if (failure.get() != null) {
+                    inFlight.release();
+                    break;
+                }
+                final long from = chunkFrom;
+                final long to = chunkTo;
+                futures.add(executor.submit(() -> {
+                    try {
+                        progress.done(from, to, executeChunk(chunkJpql, params, from, to));
+                    } catch (RuntimeException | Error e) {
+                        failure.compareAndSet(null, e);
+                        throw e;
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+                chunkFrom = chunkTo;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            executor.shutdown();
+            em.close();
+        }
+
+        // 이미 실행 중인 구간은 인터럽트하지 않고 끝날 때까지 기다린다. (커밋 여부가 lastId 에 반영된다.)
+        awaitChunks(futures);
+
+        Throwable cause = failure.get();
+        if (cause instanceof InterruptedException) {
+            throw new IllegalStateException("벌크 연산이 중단되었습니다. " + progress, cause);
+        }
+        if (cause != null) {
+            throw new IllegalStateException("벌크 연산이 실패했습니다. " + progress, cause);
+        }
+        return progress.totalCount;
+    }
+
+    private static void awaitChunks(List<Future<?>> futures) {
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    // 실패 원인은 failure 에 남아있다.
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     *  lastId 다음부터 chunkSize 번째 식별자
+     *      - 남은 row가 chunkSize 보다 적으면 마지막 식별자
+     */
+    private Long nextBound(EntityManager em, String boundJpql, String maxJpql, long lastId) {
+        List<Long> ids = em.createQuery(boundJpql, Long.class)
+                .setParameter("lastId", lastId)
+                .setFirstResult(chunkSize - 1)
+                .setMaxResults(1)
+                .getResultList();
+        if (!ids.isEmpty()) {
+            return ids.get(0);
+        }
+
+        return em.createQuery(maxJpql, Long.class)
+                .setParameter("lastId", lastId)
+                .getSingleResult();
+    }
+
+    private int executeChunk(String chunkJpql, Map<String, Object> params, long from, long to) {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            Query query = em.createQuery(chunkJpql)
+                    .setParameter("chunkFrom", from)
+                    .setParameter("chunkTo", to);
+            if (params != null) {
+                for (Map.Entry<String, Object> param : params.entrySet()) {
+                    query.setParameter(param.getKey(), param.getValue());
+                }
+            }
+            int count = query.executeUpdate();
+            tx.commit();
+            return count;
+        } catch (RuntimeException e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     *  끝난 구간을 모아두고 앞에서부터 빈틈 없이 끝난 구간까지 lastId를 올린다.
+     */
+    private static class Progress {
+
+        private final ProgressListener listener;
+        private final TreeMap<Long, long[]> doneChunks = new TreeMap<>();
+        private long lastId;
+        private long totalCount;
+
+        Progress(long startAfterId, ProgressListener listener) {
+            this.lastId = startAfterId;
+            this.listener = listener;
+        }
+
+        synchronized void done(long from, long to, int count) {
+            doneChunks.put(from, new long[]{to, count});
+            totalCount += count;
+
+            while (doneChunks.containsKey(lastId)) {
+                long[] chunk = doneChunks.remove(lastId);
+                lastId = chunk[0];
+                if (listener != null) {
+                    listener.onChunk(lastId, (int) chunk[1], totalCount);
+                }
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            StringBuilder committed = new StringBuilder();
+            for (Map.Entry<Long, long[]> chunk : doneChunks.entrySet()) {
+                committed.append(" (").append(chunk.getKey()).append(", ").append(chunk.getValue()[0]).append("]");
+            }
+            return "lastId : " + lastId + (committed.length() == 0 ? "" : ", lastId 이후 커밋된 구간 :" + committed);
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package jpql;
+
+import javax.persistence.Query;
+import javax.persistence.Tuple;
+import javax.persistence.TupleElement;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ *  DTO 프로젝션
+ *      - select new jpql.UserDTO(m.username, m.age) 는
+ *        row 마다 리플렉션(Constructor.newInstance)으로 DTO를 만든다.
+ *      - 생성자를 처음 한 번만 찾고 MethodHandle로 만들어서 캐시한다.
+ *        : row 마다 리플렉션 조회가 없다.
+ *      - 스칼라 값만 조회하기 때문에 엔티티를 만들지 않고
+ *        영속성 컨텍스트, 스냅샷(변경 감지)도 생기지 않는다.
+ *
+ *          List<UserDTO> result = DtoProjection.list(
+ *                  em.createQuery("select m.username, m.age from Member m"), UserDTO.class);
+ *
+ *  인터페이스 프로젝션
+ *      - 별칭(as)과 getter 이름을 맞춰서 Tuple을 인터페이스로 바꾼다.
+ *
+ *          select m.username as username, m.age as age from Member m
+ *          -> interface UserView { String getUsername(); int getAge(); }
+ *
+ *  생성자, 인터페이스 정보는 최대 MAX_ENTRIES 개까지 캐시한다. (LRU)
+ */
+public class DtoProjection<T> {
+
+    private static final int MAX_ENTRIES = 1000;
+
+    // (타입, 생성자 파라미터) -> DtoProjection, 인터페이스 -> TupleView
+    private static final Map<List<Object>, Object> CACHE = new LinkedHashMap<List<Object>, Object>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, Object> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private final MethodHandle constructor;
+    private final Class<?>[] declaredTypes;
+    private final Class<?>[] parameterTypes;
+
+    private DtoProjection(Constructor<T> constructor) {
+        try {
+            this.declaredTypes = constructor.getParameterTypes();
+            this.parameterTypes = wrap(declaredTypes);
+            this.constructor = MethodHandles.publicLookup().unreflectConstructor(constructor)
+                    .asSpreader(Object[].class, parameterTypes.length)
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("public 생성자가 아닙니다. constructor : " + constructor, e);
+        }
+    }
+
+    /**
+     *  파라미터 수가 arity인 public 생성자를 찾는다.
+     *      - 같은 수의 생성자가 여러 개면 of(type, parameterTypes...) 를 사용한다.
+     */
+    public static <T> DtoProjection<T> of(Class<T> type, int arity) {
+        return cached(Arrays.asList(type, arity), () -> {
+            Constructor<T> found = null;
+            for (Constructor<?> constructor : type.getConstructors()) {
+                if (constructor.getParameterCount() == arity) {
+                    if (found != null) {
+                        throw new IllegalArgumentException("파라미터가 " + arity + "개인 생성자가 여러 개입니다. type : " + type);
+                    }
+                    found = (Constructor<T>) constructor;
+                }
+            }
+            if (found == null) {
+                throw new IllegalArgumentException("파라미터가 " + arity + "개인 public 생성자가 없습니다. type : " + type);
+            }
+            return new DtoProjection<>(found);
+        });
+    }
+
+    public static <T> DtoProjection<T> of(Class<T> type, Class<?>... parameterTypes) {
+        List<Object> key = new ArrayList<>();
+        key.add(type);
+        key.addAll(Arrays.asList(parameterTypes));
+        return cached(key, () -> {
+            try {
+                return new DtoProjection<>(type.getConstructor(parameterTypes));
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException("생성자가 없습니다. type : " + type, e);
+            }
+        });
+    }
+
+    // 쿼리마다 한 번 조회한다. (row 마다 X)
+    @SuppressWarnings("unchecked")
+    private static <V> V cached(List<Object> key, Supplier<V> factory) {
+        synchronized (CACHE) {
+            return (V) CACHE.computeIfAbsent(key, k -> factory.get());
+        }
+    }
+
+    /**
+     *  JPQL 스칼라 조회, 네이티브 쿼리 모두 사용할 수 있다.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> List<T> list(Query query, Class<T> type) {
+        List<?> rows = query.getResultList();
+        List<T> result = new ArrayList<>(rows.size());
+        if (rows.isEmpty()) {
+            return result;
+        }
+
+        int arity = rows.get(0) instanceof Object[] ? ((Object[]) rows.get(0)).length : 1;
+        DtoProjection<T> projection = of(type, arity);
+        for (Object row : rows) {
+            result.add(projection.map(row instanceof Object[] ? (Object[]) row : new Object[]{row}));
+        }
+        return result;
+    }
+
+    /**
+     *  넘겨받은 row 는 바꾸지 않고 복사본을 생성자 타입으로 맞춘다.
+     *      - 기본 타입(int, long ...) 파라미터에 null 이 오면 예외 (count, sum 이 없는 row, left join)
+     */
+    @SuppressWarnings("unchecked")
+    public T map(Object[] row) {
+        if (row.length != parameterTypes.length) {
+            throw new IllegalArgumentException("조회 컬럼 수(" + row.length + ")와 생성자 파라미터 수("
+                    + parameterTypes.length + ")가 다릅니다.");
+        }
+        Object[] arguments = new Object[row.length];
+        for (int i = 0; i < row.length; i++) {
+            if (row[i] == null && declaredTypes[i].isPrimitive()) {
+                throw new IllegalArgumentException((i + 1) + "번째 값이 null 입니다. 기본 타입(" + declaredTypes[i]
+                        + ") 파라미터에는 null 을 넣을 수 없습니다. 래퍼 타입 생성자를 사용하세요. row : " + Arrays.toString(row));
+            }
+            arguments[i] = coerce(row[i], parameterTypes[i]);
+        }
+        try {
+            return (T) constructor.invokeExact(arguments);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     *  네이티브 쿼리는 BIGINT -> BigInteger 처럼 드라이버 타입으로 넘어온다.
+     */
+    private static Object coerce(Object value, Class<?> type) {
+        if (!(value instanceof Number) || type.isInstance(value)) {
+            return value;
+        }
+        Number number = (Number) value;
+        if (type == Long.class) return number.longValue();
+        if (type == Integer.class) return number.intValue();
+        if (type == Short.class) return number.shortValue();
+        if (type == Double.class) return number.doubleValue();
+        if (type == Float.class) return number.floatValue();
+        if (type == BigDecimal.class) return new BigDecimal(number.toString());
+        if (type == BigInteger.class) return new BigInteger(number.toString());
+        return value;
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    private static Class<?>[] wrap(Class<?>[] types) {
+        Class<?>[] wrapped = new Class<?>[types.length];
+        for (int i = 0; i < types.length; i++) {
+            wrapped[i] = wrap(types[i]);
+        }
+        return wrapped;
+    }
+
+    /**
+     *  Tuple -> 인터페이스
+     *      - getter 이름에서 get/is를 뺀 이름과 Tuple 별칭을 맞춘다.
+     *      - 값은 프록시를 만들 때 getter 반환 타입으로 바꿔둔다. (기본 타입 getter 에 null 이 오면 예외)
+     *      - equals, hashCode 는 같은 인터페이스끼리 getter 값으로 비교한다.
+     *      - default 메서드는 인터페이스의 구현을 호출한다.
+     */
+    public static <T> List<T> listTuples(List<Tuple> tuples, Class<T> interfaceType) {
+        List<T> result = new ArrayList<>(tuples.size());
+        if (tuples.isEmpty()) {
+            return result;
+        }
+
+        TupleView view = TupleView.of(tuples.get(0), interfaceType);
+        ClassLoader classLoader = interfaceType.getClassLoader();
+        Class<?>[] interfaces = {interfaceType};
+        for (Tuple tuple : tuples) {
+            result.add(interfaceType.cast(Proxy.newProxyInstance(classLoader, interfaces,
+                    new TupleHandler(view, view.values(tuple)))));
+        }
+        return result;
+    }
+
+    /**
+     *  인터페이스 하나의 getter, default 메서드 정보
+     *      - 별칭 위치는 첫 Tuple 에서 찾는다. (같은 쿼리의 Tuple 은 별칭 순서가 같다.)
+     */
+    private static class TupleView {
+
+        private final Class<?> interfaceType;
+        // 프로퍼티 이름순
+        private final String[] properties;
+        private final Class<?>[] returnTypes;
+        private final int[] tupleIndexes;
+        private final Map<Method, Integer> getters = new HashMap<>();
+        private final Map<Method, MethodHandle> defaultMethods;
+
+        private TupleView(Class<?> interfaceType, Map<String, Method> getters, Map<String, Integer> aliases,
+                          Map<Method, MethodHandle> defaultMethods) {
+            this.interfaceType = interfaceType;
+            this.properties = getters.keySet().toArray(new String[0]);
+            this.returnTypes = new Class<?>[properties.length];
+            this.tupleIndexes = new int[properties.length];
+            for (int i = 0; i < properties.length; i++) {
+                Method getter = getters.get(properties[i]);
+                Integer index = aliases.get(properties[i]);
+                if (index == null) {
+                    throw new IllegalArgumentException("별칭이 없습니다. alias : " + properties[i] + ", method : " + getter);
+                }
+                this.returnTypes[i] = getter.getReturnType();
+                this.tupleIndexes[i] = index;
+                this.getters.put(getter, i);
+            }
+            this.defaultMethods = defaultMethods;
+        }
+
+        static TupleView of(Tuple tuple, Class<?> interfaceType) {
+            if (!interfaceType.isInterface()) {
+                throw new IllegalArgumentException("인터페이스가 아닙니다. type : " + interfaceType);
+            }
+
+            Map<String, Integer> aliases = new HashMap<>();
+            List<TupleElement<?>> elements = tuple.getElements();
+            for (int i = 0; i < elements.size(); i++) {
+                aliases.put(elements.get(i).getAlias(), i);
+            }
+            return cached(Arrays.asList(interfaceType, aliases), () -> {
+                Map<String, Method> getters = new TreeMap<>();
+                Map<Method, MethodHandle> defaultMethods = new HashMap<>();
+                for (Method method : interfaceType.getMethods()) {
+                    if (Modifier.isStatic(method.getModifiers())) {
+                        continue;
+                    }
+                    if (method.isDefault()) {
+                        defaultMethods.put(method, defaultMethod(interfaceType, method));
+                    } else if (method.getParameterCount() == 0) {
+                        getters.put(property(method.getName()), method);
+                    }
+                }
+                return new TupleView(interfaceType, getters, aliases, defaultMethods);
+            });
+        }
+
+        Object[] values(Tuple tuple) {
+            Object[] row = tuple.toArray();
+            Object[] values = new Object[properties.length];
+            for (int i = 0; i < properties.length; i++) {
+                Object value = row[tupleIndexes[i]];
+                if (value == null && returnTypes[i].isPrimitive()) {
+                    throw new IllegalArgumentException(properties[i] + " 값이 null 입니다. 기본 타입(" + returnTypes[i]
+                            + ") getter 에는 null 을 넣을 수 없습니다. 래퍼 타입을 사용하세요. row : " + Arrays.toString(row));
+                }
+                values[i] = coerce(value, wrap(returnTypes[i]));
+            }
+            return values;
+        }
+    }
+
+    private static class TupleHandler implements InvocationHandler {
+
+        private final TupleView view;
+        private final Object[] values;
+
+        TupleHandler(TupleView view, Object[] values) {
+            this.view = view;
+            this.values = values;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Integer index = view.getters.get(method);
+            if (index != null) {
+                return values[index];
+            }
+            MethodHandle defaultMethod = view.defaultMethods.get(method);
+            if (defaultMethod != null) {
+                return defaultMethod.bindTo(proxy).invokeWithArguments(args == null ? new Object[0] : args);
+            }
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0] || sameValues(args[0]);
+                    case "hashCode":
+                        return 31 * view.interfaceType.hashCode() + Arrays.hashCode(values);
+                    case "toString":
+                        return toString();
+                }
+            }
+            throw new UnsupportedOperationException(method.toString());
+        }
+
+        private boolean sameValues(Object other) {
+            if (other == null || !Proxy.isProxyClass(other.getClass())) {
+                return false;
+            }
+            InvocationHandler handler = Proxy.getInvocationHandler(other);
+            return handler instanceof TupleHandler
+                    && ((TupleHandler) handler).view.interfaceType == view.interfaceType
+                    && Arrays.equals(((TupleHandler) handler).values, values);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(view.interfaceType.getSimpleName()).append('{');
+            for (int i = 0; i < values.length; i++) {
+                builder.append(i == 0 ? "" : ", ").append(view.properties[i]).append('=').append(values[i]);
+            }
+            return builder.append('}').toString();
+        }
+    }
+
+    private static MethodHandle defaultMethod(Class<?> interfaceType, Method method) {
+        try {
+            return privateLookupIn(interfaceType).unreflectSpecial(method, interfaceType);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("default 메서드를 호출할 수 없습니다. method : " + method, e);
+        }
+    }
+
+    /**
+     *  인터페이스 안에서 만든 것처럼 private 권한이 있는 Lookup (unreflectSpecial 에 필요하다.)
+     *      - Java 9 이상 : MethodHandles.privateLookupIn
+     *      - Java 8 : 공개 API 가 없어서 Lookup 의 private 생성자를 사용한다.
+     */
+    private static MethodHandles.Lookup privateLookupIn(Class<?> type) throws ReflectiveOperationException {
+        try {
+            Method privateLookupIn = MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+            return (MethodHandles.Lookup) privateLookupIn.invoke(null, type, MethodHandles.lookup());
+        } catch (NoSuchMethodException e) {
+            Constructor<MethodHandles.Lookup> constructor = MethodHandles.Lookup.class.getDeclaredConstructor(Class.class, int.class);
+            constructor.setAccessible(true);
+            return constructor.newInstance(type, MethodHandles.Lookup.PRIVATE);
+        }
+    }
+
+    private static String property(String getter) {
+        String name = getter;
+        if (getter.startsWith("get") && getter.length() > 3) {
+            name = getter.substring(3);
+        } else if (getter.startsWith("is") && getter.length() > 2) {
+            name = getter.substring(2);
+        }
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+}
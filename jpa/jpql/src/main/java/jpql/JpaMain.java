@@ -1,7 +1,12 @@
 package jpql;
 
+import common.ReadOnlyMode;
+import org.hibernate.Session;
+
 import javax.persistence.*;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  *  벌크 연산
@@ -22,13 +27,19 @@ import java.util.List;
  *          - 벌크 연산을 먼저 실행. (이때 em.flush()가 실행된다.)
  *          - 벌크 연산 수행 후 영속성 컨텍스트를 초기화한다.
  *              : em.clear()
+ *          - em.clear() 대신 BulkExecutor를 사용하면
+ *            조건에 해당하는 영속 엔티티만 다시 읽어온다.
  */
 
 public class JpaMain {
 
     public static void main(String args[]){
 
-        EntityManagerFactory emf = Persistence.createEntityManagerFactory("hello");
+        // BatchFetchStatistics 는 팩토리 통계를 사용한다.
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("hibernate.generate_statistics", "true");
+
+        EntityManagerFactory emf = QueryWarmUp.createEntityManagerFactory("hello", properties);
         EntityManager em = emf.createEntityManager();
         EntityTransaction tx = em.getTransaction();
 
@@ -79,6 +90,68 @@ public class JpaMain {
             System.out.println("member age : " + member.getAge());
             System.out.println("resultCount : " + resultCount);
 
+            /**
+             *  BulkExecutor
+             *      - 영속 상태인 findMember만 refresh 된다.
+             *
+             *  findMember age : 30
+             */
+            Member findMember = em.find(Member.class, member.getId());
+
+            Map<String, Object> params = new HashMap<>();
+            params.put("username", "회원1");
+            int bulkCount = new BulkExecutor(em)
+                    .update(Member.class, "m", "m.age = 30", "m.username = :username", params);
+
+            System.out.println("findMember age : " + findMember.getAge());
+            System.out.println("bulkCount : " + bulkCount);
+
+            /**
+             *  배치 페치
+             *      - team.getMembers() 를 처음 사용할 때
+             *        영속성 컨텍스트에 있는 다른 팀의 members 까지 IN 절로 한 번에 가져온다.
+             *
+             *  collection jpql.Team.members : loads 2, fetches 1, loads/fetch 2.0
+             */
+            em.clear();
+            BatchFetchStatistics batchFetchStatistics = new BatchFetchStatistics(emf);
+            batchFetchStatistics.clear();
+
+            List<Team> teams = em.createQuery("select t from Team t", Team.class).getResultList();
+            for (Team team : teams) {
+                System.out.println("team : " + team.getName() + ", members : " + team.getMembers().size());
+            }
+            batchFetchStatistics.print();
+
+            /**
+             *  사용자 정의 함수 (dialect.MyH2Dialect)
+             *      - 팀별 집계를 SQL 한 번으로 DB에서 계산한다.
+             *
+             *  team : teamA, count : 2, median age : 25.0, members : 회원1,회원2
+             */
+            List<Object[]> teamReports = em.createQuery(
+                    "select t.name, count(m), median(m.age), listagg(m.username, ',')" +
+                            " from Member m join m.team t group by t.name", Object[].class)
+                    .getResultList();
+            for (Object[] report : teamReports) {
+                System.out.println("team : " + report[0] + ", count : " + report[1]
+                        + ", median age : " + report[2] + ", members : " + report[3]);
+            }
+
+            /**
+             *  읽기 전용 조회 (ReadOnlyMode)
+             *      - 스냅샷 없이 읽고, 쿼리 전에 자동 flush 하지 않는다.
+             *      - EntityManager 전체를 읽기 전용으로 할 때는 ReadOnlyMode.open(emf)
+             *
+             *  member : 회원1, readOnly : true
+             */
+            em.clear();
+            List<Member> readOnlyMembers = ReadOnlyMode.query(
+                    em.createQuery("select m from Member m order by m.id", Member.class))
+                    .getResultList();
+            System.out.println("member : " + readOnlyMembers.get(0).getUsername()
+                    + ", readOnly : " + em.unwrap(Session.class).isReadOnly(readOnlyMembers.get(0)));
+
         }catch (Exception e){
             tx.rollback();
             e.printStackTrace();
@@ -0,0 +1,189 @@
+package jpql;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.metamodel.EntityType;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *  Keyset(seek) 페이징
+ *      - setFirstResult(100000) 는 DB가 앞의 100000 row를 읽고 버린다. (OFFSET)
+ *        : 뒤 페이지로 갈수록 느려진다.
+ *      - 마지막으로 읽은 row의 정렬 키 값을 커서로 넘기고
+ *        그 다음 값부터 바로 찾아간다.
+ *
+ *          select m, m.age, m.id from Member m
+ *          where m.age >= :k0 and (m.age > :k0 or (m.age = :k0 and m.id > :k1))
+ *          order by m.age, m.id
+ *
+ *      - 정렬 키에 인덱스가 있으면 몇 번째 페이지든 첫 페이지와 같은 비용이다.
+ *        : Member (age, MEMBER_ID), ORDERS (orderAmount, ORDER_ID)
+ *
+ *  주의점
+ *      - 정렬 키는 오름차순이고 null이 없어야 한다.
+ *      - 마지막 정렬 키는 식별자처럼 유일해야 한다.
+ */
+public class KeysetPagination<T> {
+
+    private final EntityManager em;
+    private final Class<T> entityClass;
+    private final String alias;
+    private final String[] sortKeys;
+    private final Class<?>[] sortKeyTypes;
+    private final String signature;
+
+    /**
+     *  new KeysetPagination<>(em, Member.class, "m", "age", "id")
+     */
+    public KeysetPagination(EntityManager em, Class<T> entityClass, String alias, String... sortKeys) {
+        if (sortKeys.length == 0) {
+            throw new IllegalArgumentException("정렬 키가 필요합니다.");
+        }
+        this.em = em;
+        this.entityClass = entityClass;
+        this.alias = alias;
+        this.sortKeys = sortKeys;
+
+        EntityType<T> entityType = em.getMetamodel().entity(entityClass);
+        this.sortKeyTypes = new Class<?>[sortKeys.length];
+        for (int i = 0; i < sortKeys.length; i++) {
+            sortKeyTypes[i] = entityType.getAttribute(sortKeys[i]).getJavaType();
+        }
+        this.signature = entityType.getName() + ":" + String.join(",", sortKeys);
+    }
+
+    public KeysetPage<T> first(int size) {
+        return fetch(null, size, true);
+    }
+
+    public KeysetPage<T> next(String cursor, int size) {
+        return fetch(decode(cursor), size, true);
+    }
+
+    public KeysetPage<T> previous(String cursor, int size) {
+        return fetch(decode(cursor), size, false);
+    }
+
+    private KeysetPage<T> fetch(Object[] keys, int size, boolean forward) {
+        TypedQuery<Object[]> query = em.createQuery(jpql(keys != null, forward), Object[].class)
+                .setMaxResults(size + 1);
+        if (keys != null) {
+            for (int i = 0; i < keys.length; i++) {
+                query.setParameter("k" + i, keys[i]);
+            }
+        }
+
+        List<Object[]> rows = new ArrayList<>(query.getResultList());
+        boolean hasMore = rows.size() > size;
+        if (hasMore) {
+            rows.remove(size);
+        }
+        if (!forward) {
+            Collections.reverse(rows);
+        }
+
+        List<T> content = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            content.add(entityClass.cast(row[0]));
+        }
+        if (rows.isEmpty()) {
+            return new KeysetPage<>(content, null, null);
+        }
+
+        String firstCursor = encode(rows.get(0));
+        String lastCursor = encode(rows.get(rows.size() - 1));
+        if (forward) {
+            return new KeysetPage<>(content, hasMore ? lastCursor : null, keys != null ? firstCursor : null);
+        }
+        return new KeysetPage<>(content, lastCursor, hasMore ? firstCursor : null);
+    }
+
+    private String jpql(boolean seek, boolean forward) {
+        StringBuilder select = new StringBuilder("select ").append(alias);
+        StringBuilder orderBy = new StringBuilder(" order by ");
+        for (int i = 0; i < sortKeys.length; i++) {
+            select.append(", ").append(path(i));
+            orderBy.append(i > 0 ? ", " : "").append(path(i)).append(forward ? " asc" : " desc");
+        }
+
+        String entityName = em.getMetamodel().entity(entityClass).getName();
+        return select + " from " + entityName + " " + alias + (seek ? " where " + seekPredicate(forward) : "") + orderBy;
+    }
+
+    /**
+     *  (k0, k1, k2) > (:k0, :k1, :k2) 를 JPQL로 풀어쓴다.
+     *      - 첫 번째 키는 인덱스 범위 검색이 되도록 >= 조건을 따로 붙인다.
+     */
+    private String seekPredicate(boolean forward) {
+        String compare = forward ? " > " : " < ";
+
+        StringBuilder or = new StringBuilder();
+        for (int i = 0; i < sortKeys.length; i++) {
+            or.append(i > 0 ? " or " : "").append("(");
+            for (int j = 0; j < i; j++) {
+                or.append(path(j)).append(" = :k").append(j).append(" and ");
+            }
+            or.append(path(i)).append(compare).append(":k").append(i).append(")");
+        }
+        return path(0) + (forward ? " >= " : " <= ") + ":k0 and (" + or + ")";
+    }
+
+    private String path(int i) {
+        return alias + "." + sortKeys[i];
+    }
+
+    /**
+     *  커서 : Base64(엔티티:정렬키).Base64(값1).Base64(값2) ...
+     */
+    private String encode(Object[] row) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+
+        StringBuilder cursor = new StringBuilder(encoder.encodeToString(signature.getBytes(StandardCharsets.UTF_8)));
+        for (int i = 1; i < row.length; i++) {
+            cursor.append('.').append(encoder.encodeToString(String.valueOf(row[i]).getBytes(StandardCharsets.UTF_8)));
+        }
+        return cursor.toString();
+    }
+
+    private Object[] decode(String cursor) {
+        String[] parts = cursor.split("\\.");
+        if (parts.length != sortKeys.length + 1 || !signature.equals(decodePart(parts[0]))) {
+            throw new IllegalArgumentException("정렬 기준이 다른 커서입니다. cursor : " + cursor);
+        }
+
+        Object[] keys = new Object[sortKeys.length];
+        for (int i = 0; i < keys.length; i++) {
+            try {
+                keys[i] = convert(decodePart(parts[i + 1]), sortKeyTypes[i]);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("잘못된 커서입니다. cursor : " + cursor, e);
+            }
+        }
+        return keys;
+    }
+
+    private static String decodePart(String part) {
+        return new String(Base64.getUrlDecoder().decode(part), StandardCharsets.UTF_8);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object convert(String value, Class<?> type) {
+        if (type == String.class) return value;
+        if (type == Long.class || type == long.class) return Long.valueOf(value);
+        if (type == Integer.class || type == int.class) return Integer.valueOf(value);
+        if (type == Short.class || type == short.class) return Short.valueOf(value);
+        if (type == Double.class || type == double.class) return Double.valueOf(value);
+        if (type == BigDecimal.class) return new BigDecimal(value);
+        if (type == LocalDate.class) return LocalDate.parse(value);
+        if (type == LocalDateTime.class) return LocalDateTime.parse(value);
+        if (type.isEnum()) return Enum.valueOf((Class<Enum>) type, value);
+        throw new IllegalArgumentException("지원하지 않는 정렬 키 타입입니다. type : " + type);
+    }
+}
@@ -1,14 +1,29 @@
 package jpql;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @NamedQuery(
         name = "Member.findByUsername",
-        query = "select m from Member m where m.username = :username"
+        query = "select m from Member m where m.username = :username",
+        // 쿼리 캐시 : (쿼리, 파라미터) -> 결과 식별자 목록을 Member.findByUsername 영역에 저장한다.
+        //      - 식별자로 Member 2차 캐시에서 엔티티를 꺼내기 때문에 DB를 조회하지 않는다.
+        //      - MEMBER 테이블이 flush, 벌크 연산으로 바뀔 때만 무효화된다. (다른 테이블 변경과 무관)
+        //        Team을 저장하면 Team.members 컬렉션(MEMBER 테이블)도 같이 무효화된다.
+        hints = {
+                @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+                @QueryHint(name = "org.hibernate.cacheRegion", value = "Member.findByUsername")
+        }
 )
+// KeysetPagination (age, id) 정렬 키
+@Table(indexes = @Index(name = "IDX_MEMBER_AGE_ID", columnList = "age, MEMBER_ID"))
 public class Member {
 
     @Id
@@ -0,0 +1,243 @@
+package jpql;
+
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ *  N+1 감지
+ *      - member.getTeam().getName() 처럼 지연 로딩을 반복문에서 사용하면
+ *        row 마다 select가 하나씩 나간다.
+ *      - 실행되는 SQL을 세션의 트랜잭션 단위로 모아서
+ *        (지연 로딩 대상 연관관계/엔티티, 호출 위치) 별로 센다.
+ *          : 세션마다 TransactionListener 가 자기 로그를 가진다.
+ *            (같은 스레드에서 세션을 여러 개 써도 다른 세션의 SQL이 섞이지 않는다.)
+ *      - 같은 지연 로딩이 threshold(기본 5) 번 이상이면 N+1로 본다.
+ *          - 트랜잭션이 끝날 때 로그를 남기고 detected() 통계에 더한다.
+ *          - 테스트에서는 capture() 로 구간을 잡고 assertNoNPlusOne() 으로 검사한다.
+ *            (구간에서 SQL을 본 세션 팩토리의 threshold 를 사용한다.)
+ *
+ *          try (NPlusOneDetector.Capture capture = NPlusOneDetector.capture()) {
+ *              ...
+ *              capture.assertNoNPlusOne();
+ *          }
+ *
+ *  설정 (persistence.xml)
+ *      - hibernate.session_factory.statement_inspector = jpql.NPlusOneDetector
+ *      - hibernate.session.events.auto = jpql.NPlusOneDetector$TransactionListener
+ *      - hibernate.ejb.session_factory_observer = jpql.NPlusOneDetector$Configuration
+ *          : nplusone.threshold 속성을 읽는다. (없으면 5)
+ *      - hibernate.use_sql_comments = true
+ *          : SQL 주석(load one-to-many jpql.Team.members)으로 연관관계를 구분한다.
+ *          : 꺼져 있으면 아무것도 감지하지 못하므로 세션 팩토리를 만들 때 경고를 남긴다.
+ */
+public class NPlusOneDetector implements StatementInspector {
+
+    private static final Logger logger = Logger.getLogger(NPlusOneDetector.class);
+
+    public static final String THRESHOLD_PROPERTY = "nplusone.threshold";
+    private static final int DEFAULT_THRESHOLD = 5;
+
+    // /* load jpql.Team */, /* load one-to-many jpql.Team.members */
+    private static final Pattern LOAD_COMMENT = Pattern.compile("^\\s*/\\*\\s*load\\s+(?:(?:one-to-many|collection|many-to-many)\\s+)?([\\w.$]+)\\s*\\*/");
+
+    // inspect() 바로 다음에 같은 스레드에서 그 세션의 jdbcPrepareStatementStart() 가 가져간다.
+    private static final ThreadLocal<Inspected> INSPECTED = new ThreadLocal<>();
+    private static final ThreadLocal<List<Capture>> CAPTURES = ThreadLocal.withInitial(ArrayList::new);
+
+    private static final Map<String, LongAdder> DETECTED = new ConcurrentHashMap<>();
+    private static final LongAdder TRANSACTIONS = new LongAdder();
+
+    // 세션 팩토리마다 하나 (Configuration 이 persistence unit 속성으로 바꾼다.)
+    private volatile int threshold = DEFAULT_THRESHOLD;
+
+    @Override
+    public String inspect(String sql) {
+        Matcher matcher = LOAD_COMMENT.matcher(sql);
+        String key = matcher.find() ? matcher.group(1) + " @ " + callSite() : null;
+
+        INSPECTED.set(new Inspected(key, threshold));
+        for (Capture capture : CAPTURES.get()) {
+            capture.log.add(key);
+            capture.threshold = threshold;
+        }
+        return sql;
+    }
+
+    public static Capture capture() {
+        Capture capture = new Capture();
+        CAPTURES.get().add(capture);
+        return capture;
+    }
+
+    /**
+     *  지금까지 N+1로 감지된 (연관관계 @ 호출 위치) 별 트랜잭션 수
+     */
+    public static Map<String, Long> detected() {
+        Map<String, Long> detected = new LinkedHashMap<>();
+        DETECTED.forEach((key, count) -> detected.put(key, count.sum()));
+        return detected;
+    }
+
+    public static long transactions() {
+        return TRANSACTIONS.sum();
+    }
+
+    /**
+     *  하이버네이트 내부, 프록시, JDK 프레임을 건너뛴 첫 번째 애플리케이션 코드 위치
+     */
+    private static String callSite() {
+        for (StackTraceElement frame : new Throwable().getStackTrace()) {
+            String className = frame.getClassName();
+            if (className.startsWith("org.hibernate.") || className.startsWith("java.")
+                    || className.startsWith("javax.") || className.startsWith("sun.")
+                    || className.startsWith("jdk.") || className.contains("$HibernateProxy$")
+                    || className.startsWith(NPlusOneDetector.class.getName())) {
+                continue;
+            }
+            return className + "." + frame.getMethodName() + ":" + frame.getLineNumber();
+        }
+        return "unknown";
+    }
+
+    /**
+     *  세션이 준비하는 SQL을 모아두고, 트랜잭션이 끝나면 검사하고 비운다.
+     *      - 세션마다 하나씩 만들어진다. (hibernate.session.events.auto)
+     */
+    public static class TransactionListener extends BaseSessionEventListener {
+
+        private StatementLog log = new StatementLog();
+        private int threshold = DEFAULT_THRESHOLD;
+
+        @Override
+        public void jdbcPrepareStatementStart() {
+            Inspected inspected = INSPECTED.get();
+            if (inspected != null) {
+                INSPECTED.remove();
+                log.add(inspected.loadKey);
+                threshold = inspected.threshold;
+            }
+        }
+
+        @Override
+        public void transactionCompletion(boolean successful) {
+            StatementLog log = this.log;
+            this.log = new StatementLog();
+            TRANSACTIONS.increment();
+
+            for (Map.Entry<String, Integer> detected : log.detected(threshold).entrySet()) {
+                DETECTED.computeIfAbsent(detected.getKey(), key -> new LongAdder()).increment();
+                System.out.println("N+1 detected : " + detected.getKey() + ", " + detected.getValue()
+                        + " / " + log.total + " statements");
+            }
+        }
+    }
+
+    /**
+     *  persistence unit 속성 nplusone.threshold 를 세션 팩토리의 NPlusOneDetector 에 넣는다.
+     *      - hibernate.use_sql_comments 가 꺼져 있으면 경고한다.
+     */
+    public static class Configuration implements SessionFactoryObserver {
+
+        @Override
+        public void sessionFactoryCreated(SessionFactory factory) {
+            SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor) factory;
+            StatementInspector inspector = sessionFactory.getSessionFactoryOptions().getStatementInspector();
+            Object threshold = sessionFactory.getProperties().get(THRESHOLD_PROPERTY);
+            if (!(inspector instanceof NPlusOneDetector)) {
+                return;
+            }
+            if (threshold != null) {
+                ((NPlusOneDetector) inspector).threshold = Integer.parseInt(threshold.toString().trim());
+            }
+            if (!sessionFactory.getSessionFactoryOptions().isCommentsEnabled()) {
+                logger.warn("hibernate.use_sql_comments 가 true 가 아니어서 N+1 을 감지할 수 없습니다.");
+            }
+        }
+    }
+
+    public static class Capture implements AutoCloseable {
+
+        private final StatementLog log = new StatementLog();
+
+        // 마지막으로 SQL을 본 NPlusOneDetector 의 threshold
+        private volatile int threshold = DEFAULT_THRESHOLD;
+
+        public int count() {
+            return log.total;
+        }
+
+        public Map<String, Integer> loads() {
+            return Collections.unmodifiableMap(log.loads);
+        }
+
+        public void assertNoNPlusOne() {
+            assertNoNPlusOne(threshold);
+        }
+
+        public void assertNoNPlusOne(int threshold) {
+            Map<String, Integer> detected = log.detected(threshold);
+            if (!detected.isEmpty()) {
+                throw new AssertionError("N+1 detected : " + detected);
+            }
+        }
+
+        public void assertStatementCount(int expected) {
+            if (log.total != expected) {
+                throw new AssertionError("expected " + expected + " statements but was " + log.total + ", loads : " + log.loads);
+            }
+        }
+
+        @Override
+        public void close() {
+            CAPTURES.get().remove(this);
+        }
+    }
+
+    private static class Inspected {
+
+        private final String loadKey;
+        private final int threshold;
+
+        Inspected(String loadKey, int threshold) {
+            this.loadKey = loadKey;
+            this.threshold = threshold;
+        }
+    }
+
+    private static class StatementLog {
+
+        private final Map<String, Integer> loads = new LinkedHashMap<>();
+        private int total;
+
+        void add(String loadKey) {
+            total++;
+            if (loadKey != null) {
+                loads.merge(loadKey, 1, Integer::sum);
+            }
+        }
+
+        Map<String, Integer> detected(int threshold) {
+            Map<String, Integer> detected = new LinkedHashMap<>();
+            loads.forEach((key, count) -> {
+                if (count >= threshold) {
+                    detected.put(key, count);
+                }
+            });
+            return detected;
+        }
+    }
+}
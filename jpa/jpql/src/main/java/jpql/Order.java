@@ -3,7 +3,8 @@ package jpql;
 import javax.persistence.*;
 
 @Entity
-@Table(name = "ORDERS")
+// KeysetPagination (orderAmount, id) 정렬 키
+@Table(name = "ORDERS", indexes = @Index(name = "IDX_ORDERS_AMOUNT_ID", columnList = "orderAmount, ORDER_ID"))
 public class Order {
 
     @Id
@@ -0,0 +1,90 @@
+package jpql;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import javax.persistence.Tuple;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ *  엔티티 조회 vs select new vs DtoProjection
+ *      - 메모리 H2에 Member를 rows 건 넣고 같은 컬럼을 여러 방법으로 읽는다.
+ *      - 워밍업 후 평균 시간을 비교한다. (단순 반복, JMH 측정은 benchmark 모듈의 ProjectionBenchmark)
+ *
+ *  실행
+ *      java jpql.ProjectionBenchMain 100000
+ */
+public class ProjectionBenchMain {
+
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 10;
+
+    public static void main(String args[]) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1");
+        properties.put("hibernate.show_sql", "false");
+        properties.put("hibernate.format_sql", "false");
+        properties.put("hibernate.use_sql_comments", "false");
+
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("hello", properties);
+        insertMembers(emf, rows);
+
+        measure(emf, "entity", em -> em.createQuery("select m from Member m", Member.class)
+                .getResultList().size());
+
+        measure(emf, "select new", em -> em.createQuery("select new jpql.UserDTO(m.username, m.age) from Member m", UserDTO.class)
+                .getResultList().size());
+
+        measure(emf, "DtoProjection", em -> DtoProjection.list(
+                em.createQuery("select m.username, m.age from Member m"), UserDTO.class).size());
+
+        measure(emf, "interface", em -> DtoProjection.listTuples(
+                em.createQuery("select m.username as username, m.age as age from Member m", Tuple.class).getResultList(),
+                UserView.class).size());
+
+        emf.close();
+    }
+
+    private static void insertMembers(EntityManagerFactory emf, int rows) {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        em.createNativeQuery("insert into Member (MEMBER_ID, username, age) " +
+                "select X, 'member' || X, mod(X, 100) from system_range(1, ?)")
+                .setParameter(1, rows)
+                .executeUpdate();
+        tx.commit();
+        em.close();
+    }
+
+    private static void measure(EntityManagerFactory emf, String name, Function<EntityManager, Integer> read) {
+        for (int i = 0; i < WARMUP; i++) {
+            run(emf, read);
+        }
+
+        long start = System.nanoTime();
+        int count = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            count = run(emf, read);
+        }
+        long elapsed = (System.nanoTime() - start) / ITERATIONS;
+
+        System.out.println(String.format("%-15s rows : %d, avg : %d ms, rows/s : %d",
+                name, count, elapsed / 1_000_000, count * 1_000_000_000L / elapsed));
+    }
+
+    private static int run(EntityManagerFactory emf, Function<EntityManager, Integer> read) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return read.apply(em);
+        } finally {
+            em.close();
+        }
+    }
+}
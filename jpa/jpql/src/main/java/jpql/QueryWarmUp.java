@@ -0,0 +1,152 @@
+package jpql;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Persistence;
+import javax.persistence.metamodel.EntityType;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  쿼리 워밍업
+ *      - JPQL은 처음 실행될 때 파싱하고 SQL로 변환한 뒤 QueryPlanCache에 저장한다.
+ *        : 배포 직후 첫 요청들이 느리다.
+ *      - EntityManagerFactory를 만들 때 버리는 EntityManager 로 쿼리를 미리 만들어서 캐시에 넣어둔다.
+ *        (createQuery, createNamedQuery 는 실행하지 않아도 변환 결과를 캐시에 넣는다.)
+ *          - 엔티티에 붙은 @NamedQuery 전부
+ *          - META-INF/warmup-queries.jpql 에 적어둔 JPQL (한 줄에 하나, # 주석)
+ *      - 잘못된 쿼리가 있으면 EntityManagerFactory를 닫고 바로 예외를 던진다.
+ *
+ *  주의점
+ *      - QueryPlanCache 크기(hibernate.query.plan_cache_max_size, 기본 2048)보다
+ *        많이 넣으면 먼저 넣은 쿼리가 밀려난다.
+ *      - orm.xml 에 적은 NamedQuery 는 찾지 못한다. (하이버네이트가 시작할 때 검사는 한다.)
+ *      - Criteria 쿼리는 실행할 때마다 JPQL 문자열을 새로 만들어서 쓰므로 여기서 따로 다루지 않는다.
+ */
+public class QueryWarmUp {
+
+    public static final String WARMUP_QUERIES = "META-INF/warmup-queries.jpql";
+
+    private final EntityManagerFactory emf;
+
+    public QueryWarmUp(EntityManagerFactory emf) {
+        this.emf = emf;
+    }
+
+    public static EntityManagerFactory createEntityManagerFactory(String persistenceUnitName) {
+        return createEntityManagerFactory(persistenceUnitName, Collections.emptyMap());
+    }
+
+    public static EntityManagerFactory createEntityManagerFactory(String persistenceUnitName, Map<String, Object> properties) {
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory(persistenceUnitName, properties);
+        try {
+            QueryWarmUp warmUp = new QueryWarmUp(emf);
+            warmUp.warmUpNamedQueries();
+            warmUp.warmUp(readQueries(WARMUP_QUERIES));
+            return emf;
+        } catch (RuntimeException e) {
+            emf.close();
+            throw e;
+        }
+    }
+
+    public void warmUpNamedQueries() {
+        long start = System.nanoTime();
+        List<String> names = namedQueries();
+
+        Map<String, Exception> errors = new LinkedHashMap<>();
+        EntityManager em = emf.createEntityManager();
+        try {
+            for (String name : names) {
+                try {
+                    em.createNamedQuery(name);
+                } catch (RuntimeException e) {
+                    errors.put(name, e);
+                }
+            }
+        } finally {
+            em.close();
+        }
+        if (!errors.isEmpty()) {
+            throw new IllegalStateException("잘못된 NamedQuery가 있습니다. " + errors);
+        }
+
+        report("named query " + names.size(), start);
+    }
+
+    public void warmUp(List<String> queries) {
+        long start = System.nanoTime();
+
+        Map<String, Exception> errors = new LinkedHashMap<>();
+        EntityManager em = emf.createEntityManager();
+        try {
+            for (String query : queries) {
+                try {
+                    em.createQuery(query);
+                } catch (RuntimeException e) {
+                    errors.put(query, e);
+                }
+            }
+        } finally {
+            em.close();
+        }
+        if (!errors.isEmpty()) {
+            throw new IllegalStateException("잘못된 JPQL이 있습니다. " + errors);
+        }
+
+        report("jpql " + queries.size(), start);
+    }
+
+    private List<String> namedQueries() {
+        List<String> names = new ArrayList<>();
+        for (EntityType<?> entity : emf.getMetamodel().getEntities()) {
+            Class<?> type = entity.getJavaType();
+            NamedQuery namedQuery = type.getAnnotation(NamedQuery.class);
+            if (namedQuery != null) {
+                names.add(namedQuery.name());
+            }
+            NamedQueries namedQueries = type.getAnnotation(NamedQueries.class);
+            if (namedQueries != null) {
+                for (NamedQuery each : namedQueries.value()) {
+                    names.add(each.name());
+                }
+            }
+        }
+        return names;
+    }
+
+    static List<String> readQueries(String resource) {
+        List<String> queries = new ArrayList<>();
+        InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            return queries;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    queries.add(line);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("워밍업 쿼리를 읽을 수 없습니다. resource : " + resource, e);
+        }
+        return queries;
+    }
+
+    private static void report(String target, long start) {
+        System.out.println("warm up " + target + " : " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
@@ -0,0 +1,117 @@
+package jpql;
+
+import common.ReadOnlyMode;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ *  일반 EntityManager vs ReadOnlyMode
+ *      - heap : Member rows 건을 올려둔 영속성 컨텍스트가 차지하는 메모리 (GC 후 사용량 차이)
+ *          : ReadOnlyMode 가 스냅샷을 버리는 것은 향상된 빌드(mvn install -Penhance)일 때다.
+ *      - 조회 : Member rows 건이 영속 상태일 때 식별자 조회 JPQL 을 SEARCHES 번 실행
+ *          : 일반 EntityManager 는 JPQL 실행 전마다 자동 flush 로 영속 엔티티 전체를 확인한다.
+ *
+ *  실행
+ *      java -Xmx2g jpql.ReadOnlyBenchMain 100000
+ */
+public class ReadOnlyBenchMain {
+
+    private static final int SEARCHES = 100;
+    private static final int TEAMS = 1000;
+
+    public static void main(String args[]) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:readonly;DB_CLOSE_DELAY=-1");
+        properties.put("hibernate.show_sql", "false");
+        properties.put("hibernate.format_sql", "false");
+        properties.put("hibernate.use_sql_comments", "false");
+        properties.put("hibernate.cache.use_second_level_cache", "false");
+        properties.put("hibernate.cache.use_query_cache", "false");
+
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("hello", properties);
+        insertMembers(emf, rows);
+
+        Random random = new Random(7);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < SEARCHES; i++) {
+            ids.add(1L + random.nextInt(rows));
+        }
+
+        // JIT 워밍업
+        for (int i = 0; i < 3; i++) {
+            measure(emf, "warmup", rows, ids, EntityManagerFactory::createEntityManager, false);
+            measure(emf, "warmup", rows, ids, ReadOnlyMode::open, false);
+        }
+        measure(emf, "EntityManager", rows, ids, EntityManagerFactory::createEntityManager, true);
+        measure(emf, "ReadOnlyMode", rows, ids, ReadOnlyMode::open, true);
+
+        emf.close();
+    }
+
+    private static void insertMembers(EntityManagerFactory emf, int rows) {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        em.createNativeQuery("insert into Team (TEAM_ID, name) select X, 'team' || X from system_range(1, ?)")
+                .setParameter(1, TEAMS)
+                .executeUpdate();
+        em.createNativeQuery("insert into Member (MEMBER_ID, username, age, TEAM_ID) " +
+                "select X, 'member' || X, mod(X, 100), mod(X, ?) + 1 from system_range(1, ?)")
+                .setParameter(1, TEAMS)
+                .setParameter(2, rows)
+                .executeUpdate();
+        tx.commit();
+        em.close();
+    }
+
+    private static void measure(EntityManagerFactory emf, String name, int rows, List<Long> ids,
+                                Function<EntityManagerFactory, EntityManager> open, boolean print) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long before = usedHeap(memory);
+
+        EntityManager em = open.apply(emf);
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        long start = System.nanoTime();
+        List<Member> members = em.createQuery("select m from Member m", Member.class).getResultList();
+        long load = System.nanoTime() - start;
+        long heap = usedHeap(memory) - before;
+
+        start = System.nanoTime();
+        int found = 0;
+        for (Long id : ids) {
+            found += em.createQuery("select m from Member m where m.id = :id", Member.class)
+                    .setParameter("id", id)
+                    .getResultList().size();
+        }
+        long search = System.nanoTime() - start;
+        tx.commit();
+        em.close();
+
+        if (print) {
+            System.out.println(String.format("%-14s load %d : %d ms, heap : %.1f MB (%d bytes/entity), %d queries : %.1f ms (found %d)",
+                    name, members.size(), load / 1_000_000, heap / 1024.0 / 1024, heap / rows,
+                    ids.size(), search / 1_000_000.0, found));
+        }
+    }
+
+    private static long usedHeap(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,152 @@
+package jpql;
+
+import common.NotEnoughStockException;
+import common.StockReservation;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  상품 하나에 주문이 몰릴 때 재고 차감 비교
+ *      - 변경 감지 : find -> setStockAmount(재고 - 1) -> commit
+ *          : 갱신 손실 때문에 (처음 재고 - 성공한 주문 수) 와 DB 재고가 맞지 않는다.
+ *      - 조건부 update : StockReservation(emf, Product.class, "stockAmount")
+ *      - 버퍼 모드 : StockReservation(emf, Product.class, "stockAmount", stripes, flushIntervalMillis)
+ *      - 재고는 전체 주문 수의 절반으로 두어서 품절까지 같이 확인한다.
+ *
+ *  실행
+ *      java jpql.StockBenchMain 16 2000
+ */
+public class StockBenchMain {
+
+    public static void main(String args[]) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int ordersPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int stock = threads * ordersPerThread / 2;
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:stock;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        properties.put("hibernate.show_sql", "false");
+        properties.put("hibernate.format_sql", "false");
+        properties.put("hibernate.use_sql_comments", "false");
+
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("hello", properties);
+
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        Product product = new Product();
+        product.setName("hot item");
+        product.setPrice(10000);
+        em.persist(product);
+        tx.commit();
+        em.close();
+        Long productId = product.getId();
+
+        measure(emf, "dirty checking", productId, stock, threads, ordersPerThread, () -> {
+            EntityManager orderEm = emf.createEntityManager();
+            EntityTransaction orderTx = orderEm.getTransaction();
+            try {
+                orderTx.begin();
+                Product findProduct = orderEm.find(Product.class, productId);
+                if (findProduct.getStockAmount() < 1) {
+                    orderTx.rollback();
+                    return false;
+                }
+                findProduct.setStockAmount(findProduct.getStockAmount() - 1);
+                orderTx.commit();
+                return true;
+            } finally {
+                orderEm.close();
+            }
+        });
+
+        StockReservation atomic = new StockReservation(emf, Product.class, "stockAmount");
+        measure(emf, "conditional update", productId, stock, threads, ordersPerThread, () -> reserve(atomic, productId));
+
+        StockReservation buffered = new StockReservation(emf, Product.class, "stockAmount", Runtime.getRuntime().availableProcessors(), 50);
+        measure(emf, "buffered", productId, stock, threads, ordersPerThread, () -> reserve(buffered, productId));
+        buffered.close();
+
+        emf.close();
+    }
+
+    private static boolean reserve(StockReservation stockReservation, Long productId) {
+        try {
+            StockReservation.Reservation reservation = stockReservation.reserve(productId, 1);
+            stockReservation.confirm(reservation);
+            return true;
+        } catch (NotEnoughStockException e) {
+            return false;
+        }
+    }
+
+    private static void measure(EntityManagerFactory emf, String name, Long productId, int stock,
+                                int threads, int ordersPerThread, PlaceOrder placeOrder) throws Exception {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        em.createQuery("update Product p set p.stockAmount = :stock where p.id = :productId")
+                .setParameter("stock", stock)
+                .setParameter("productId", productId)
+                .executeUpdate();
+        tx.commit();
+        em.close();
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < ordersPerThread; j++) {
+                    try {
+                        if (placeOrder.place()) {
+                            succeeded.incrementAndGet();
+                        }
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.MINUTES);
+        long elapsed = System.nanoTime() - begin;
+
+        if (name.equals("buffered")) {
+            // 남은 예약을 DB에 반영하고 나서 비교한다.
+            Thread.sleep(100);
+        }
+
+        em = emf.createEntityManager();
+        int remaining = em.createQuery("select p.stockAmount from Product p where p.id = :productId", Integer.class)
+                .setParameter("productId", productId)
+                .getSingleResult();
+        em.close();
+
+        int totalOrders = threads * ordersPerThread;
+        System.out.println(String.format("%-20s orders/s : %d, sold : %d, errors : %d, stock : %d (expected %d)",
+                name, totalOrders * 1_000_000_000L / elapsed, succeeded.get(), failed.get(),
+                remaining, stock - succeeded.get()));
+    }
+
+    private interface PlaceOrder {
+        boolean place();
+    }
+}
@@ -1,12 +1,16 @@
 package jpql;
 
 import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Team {
 
     @Id
@@ -17,6 +21,8 @@ public class Team {
     private String name;
 
     // 1000이하의 값을 준다.
+    // 전역 설정(default_batch_fetch_size)과 다르게 주고 싶을 때 사용한다.
+    // PADDED 스타일이면 남은 컬렉션 수에 맞춰 100 이하의 고정된 크기 중 하나로 조회한다.
 //    @BatchSize(size = 100) -> local setting
     @OneToMany(mappedBy = "team")
     private List<Member> members = new ArrayList<>();
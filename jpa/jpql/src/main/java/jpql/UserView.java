@@ -0,0 +1,17 @@
+package jpql;
+
+/**
+ *  인터페이스 프로젝션 (DtoProjection.listTuples)
+ *
+ *      select m.username as username, m.age as age from Member m
+ */
+public interface UserView {
+
+    String getUsername();
+
+    int getAge();
+
+    default String getLabel() {
+        return getUsername() + "(" + getAge() + ")";
+    }
+}
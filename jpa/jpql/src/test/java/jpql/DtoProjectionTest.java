@@ -0,0 +1,111 @@
+package jpql;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.Tuple;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DtoProjectionTest {
+
+    private static EntityManagerFactory emf;
+
+    @BeforeAll
+    static void setUp() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:projection;DB_CLOSE_DELAY=-1");
+        properties.put("hibernate.show_sql", "false");
+        emf = Persistence.createEntityManagerFactory("hello", properties);
+
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        Team team = new Team();
+        team.setName("teamA");
+        em.persist(team);
+        for (int i = 1; i <= 3; i++) {
+            Member member = new Member();
+            member.setUsername("member" + i);
+            member.setAge(10 * i);
+            member.setTeam(i == 3 ? null : team);
+            em.persist(member);
+        }
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        emf.close();
+    }
+
+    @Test
+    void mapsRowsToConstructor() {
+        List<UserDTO> users = read(em -> DtoProjection.list(
+                em.createQuery("select m.username, m.age from Member m order by m.username"), UserDTO.class));
+
+        assertEquals(3, users.size());
+        assertEquals("member1", users.get(0).getUsername());
+        assertEquals(10, users.get(0).getAge());
+    }
+
+    @Test
+    void mapsTuplesToInterface() {
+        List<UserView> users = views("select m.username as username, m.age as age from Member m order by m.username");
+
+        UserView first = users.get(0);
+        assertEquals("member1", first.getUsername());
+        assertEquals(10, first.getAge());
+        assertEquals("member1(10)", first.getLabel());
+        assertEquals("UserView{age=10, username=member1}", first.toString());
+    }
+
+    @Test
+    void interfaceEqualsComparesValues() {
+        String jpql = "select m.username as username, m.age as age from Member m order by m.username";
+        List<UserView> users = views(jpql);
+        List<UserView> again = views(jpql);
+
+        assertEquals(users.get(0), again.get(0));
+        assertEquals(users.get(0).hashCode(), again.get(0).hashCode());
+        assertNotEquals(users.get(0), users.get(1));
+        assertTrue(users.contains(again.get(2)));
+    }
+
+    @Test
+    void nullForPrimitiveGetterFailsWhileMapping() {
+        // member3 은 팀이 없어서 age 자리에 null 이 온다.
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> views(
+                "select m.username as username, t.id as age from Member m left join m.team t order by m.username"));
+        assertTrue(e.getMessage().startsWith("age 값이 null 입니다."), e.getMessage());
+    }
+
+    @Test
+    void missingAliasFails() {
+        assertThrows(IllegalArgumentException.class, () -> views("select m.username as username from Member m"));
+    }
+
+    private static List<UserView> views(String jpql) {
+        return read(em -> DtoProjection.listTuples(em.createQuery(jpql, Tuple.class).getResultList(), UserView.class));
+    }
+
+    private static <T> T read(Function<EntityManager, T> query) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return query.apply(em);
+        } finally {
+            em.close();
+        }
+    }
+}
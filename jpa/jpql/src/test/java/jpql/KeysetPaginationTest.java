@@ -0,0 +1,139 @@
+package jpql;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeysetPaginationTest {
+
+    private static final int MEMBERS = 25;
+
+    private static EntityManagerFactory emf;
+
+    @BeforeAll
+    static void setUp() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:keyset;DB_CLOSE_DELAY=-1");
+        properties.put("hibernate.show_sql", "false");
+        emf = Persistence.createEntityManagerFactory("hello", properties);
+
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        for (int i = 0; i < MEMBERS; i++) {
+            Member member = new Member();
+            member.setUsername("member" + i);
+            // 나이가 겹쳐야 두 번째 정렬 키(id)로 넘어간다.
+            member.setAge(i % 4 * 10);
+            em.persist(member);
+        }
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        emf.close();
+    }
+
+    @Test
+    void nextPagesVisitEveryRowOnceInSortOrder() {
+        List<Long> expected = read(em -> em.createQuery("select m.id from Member m order by m.age, m.id", Long.class)
+                .getResultList());
+
+        List<Long> visited = new ArrayList<>();
+        int pages = read(em -> {
+            KeysetPagination<Member> pagination = new KeysetPagination<>(em, Member.class, "m", "age", "id");
+            KeysetPage<Member> page = pagination.first(7);
+            assertFalse(page.hasPrevious());
+            int count = 1;
+            visited.addAll(ids(page));
+            while (page.hasNext()) {
+                page = pagination.next(page.getNextCursor(), 7);
+                assertTrue(page.hasPrevious());
+                visited.addAll(ids(page));
+                count++;
+            }
+            return count;
+        });
+
+        assertEquals(expected, visited);
+        assertEquals(4, pages);
+    }
+
+    @Test
+    void previousReturnsThePageBefore() {
+        read(em -> {
+            KeysetPagination<Member> pagination = new KeysetPagination<>(em, Member.class, "m", "age", "id");
+            KeysetPage<Member> first = pagination.first(5);
+            KeysetPage<Member> second = pagination.next(first.getNextCursor(), 5);
+
+            KeysetPage<Member> back = pagination.previous(second.getPreviousCursor(), 5);
+            assertEquals(ids(first), ids(back));
+            assertFalse(back.hasPrevious());
+            assertEquals(ids(second), ids(pagination.next(back.getNextCursor(), 5)));
+            return null;
+        });
+    }
+
+    @Test
+    void lastAndEmptyPagesHaveNoCursorsOnTheOpenSide() {
+        read(em -> {
+            KeysetPagination<Member> pagination = new KeysetPagination<>(em, Member.class, "m", "age", "id");
+            KeysetPage<Member> all = pagination.first(MEMBERS);
+            assertEquals(MEMBERS, all.getContent().size());
+            assertNull(all.getNextCursor());
+
+            // 첫 row 앞으로는 아무것도 없다.
+            KeysetPage<Member> first = pagination.first(1);
+            KeysetPage<Member> before = pagination.previous(first.getNextCursor(), 1);
+            assertTrue(before.getContent().isEmpty());
+            assertNull(before.getNextCursor());
+            assertNull(before.getPreviousCursor());
+            return null;
+        });
+    }
+
+    @Test
+    void rejectsCursorsOfAnotherSortOrder() {
+        read(em -> {
+            KeysetPagination<Member> byAge = new KeysetPagination<>(em, Member.class, "m", "age", "id");
+            KeysetPagination<Member> byId = new KeysetPagination<>(em, Member.class, "m", "id");
+            String cursor = byAge.first(3).getNextCursor();
+
+            assertThrows(IllegalArgumentException.class, () -> byId.next(cursor, 3));
+            String tampered = cursor.substring(0, cursor.indexOf('.') + 1) + "YWJj." + cursor.substring(cursor.lastIndexOf('.') + 1);
+            assertThrows(IllegalArgumentException.class, () -> byAge.next(tampered, 3));
+            assertThrows(IllegalArgumentException.class, () -> new KeysetPagination<>(em, Member.class, "m"));
+            return null;
+        });
+    }
+
+    private static List<Long> ids(KeysetPage<Member> page) {
+        return page.getContent().stream().map(Member::getId).collect(Collectors.toList());
+    }
+
+    private static <R> R read(Function<EntityManager, R> work) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return work.apply(em);
+        } finally {
+            em.close();
+        }
+    }
+}
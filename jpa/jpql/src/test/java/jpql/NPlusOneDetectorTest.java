@@ -0,0 +1,87 @@
+package jpql;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NPlusOneDetectorTest {
+
+    private static EntityManagerFactory emf;
+
+    @BeforeAll
+    static void setUp() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:nplusone;DB_CLOSE_DELAY=-1");
+        properties.put("hibernate.show_sql", "false");
+        // 팀마다 select 가 하나씩 나가도록 배치 로딩과 2차 캐시를 끈다.
+        properties.put("hibernate.default_batch_fetch_size", "1");
+        properties.put("hibernate.cache.use_second_level_cache", "false");
+        properties.put("hibernate.cache.use_query_cache", "false");
+        properties.put(NPlusOneDetector.THRESHOLD_PROPERTY, "3");
+        emf = Persistence.createEntityManagerFactory("hello", properties);
+
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        for (int i = 1; i <= 3; i++) {
+            Team team = new Team();
+            team.setName("team" + i);
+            em.persist(team);
+            Member member = new Member();
+            member.setUsername("member" + i);
+            member.setTeam(team);
+            em.persist(member);
+        }
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        emf.close();
+    }
+
+    @Test
+    void lazyLoadingInALoopIsDetectedWithTheConfiguredThreshold() {
+        try (NPlusOneDetector.Capture capture = NPlusOneDetector.capture()) {
+            readTeamNames("select m from Member m");
+
+            capture.assertStatementCount(4);
+            // 기본값(5)이 아니라 nplusone.threshold(3)로 검사한다.
+            AssertionError e = assertThrows(AssertionError.class, capture::assertNoNPlusOne);
+            assertTrue(e.getMessage().startsWith("N+1 detected : {jpql.Team @ "), e.getMessage());
+            capture.assertNoNPlusOne(4);
+        }
+    }
+
+    @Test
+    void fetchJoinPasses() {
+        try (NPlusOneDetector.Capture capture = NPlusOneDetector.capture()) {
+            readTeamNames("select m from Member m join fetch m.team");
+
+            capture.assertStatementCount(1);
+            capture.assertNoNPlusOne();
+        }
+    }
+
+    private static void readTeamNames(String jpql) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            List<Member> members = em.createQuery(jpql, Member.class).getResultList();
+            for (Member member : members) {
+                member.getTeam().getName();
+            }
+        } finally {
+            em.close();
+        }
+    }
+}